@@ -0,0 +1,59 @@
+package com.fs.tabulaplus.benchmark;
+
+import com.fs.tabulaplus.PdfSection;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The input documents of the benchmarks: sample-tables.pdf with the sections of the examples, and generated
+ * statements with a few hundred pages
+ */
+@State(Scope.Benchmark)
+public class DocumentState {
+    static final String SAMPLE = "sample-tables";
+
+    @Param({SAMPLE, "synthetic-100", "synthetic-400"})
+    public String document;
+
+    public File pdfFile;
+
+    public PdfSection[] sections;
+
+    public PdfSection rootSection;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        if (SAMPLE.equals(document))
+        {
+            pdfFile = new File("sample-tables.pdf");
+            sections = sampleSections();
+            rootSection = new PdfSection("root", null, null, null, null, true, true, true, true, 0, 0, null,
+                    Arrays.asList(sections));
+        }
+        else
+        {
+            int numOfPages = Integer.parseInt(document.substring(document.indexOf('-') + 1));
+            pdfFile = SyntheticPdf.generate(numOfPages);
+            sections = SyntheticPdf.sections();
+            rootSection = SyntheticPdf.root();
+        }
+    }
+
+    private static PdfSection[] sampleSections()
+    {
+        PdfSection table7 = new PdfSection("Table 7", new String[]{"Table 7:"}, null, new String[]{"Table 8:"},
+                null, false, true, false, true, 0, 0, null, Collections.<PdfSection>emptyList());
+        PdfSection table10 = new PdfSection("Table 10", new String[]{"layout problems)"}, null,
+                new String[]{"Table 11:"}, null, false, true, false, true, 0, 0, null,
+                Collections.<PdfSection>emptyList());
+        return new PdfSection[]{table7, table10};
+    }
+}
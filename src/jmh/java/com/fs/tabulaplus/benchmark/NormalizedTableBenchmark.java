@@ -0,0 +1,71 @@
+package com.fs.tabulaplus.benchmark;
+
+import com.fs.tabulaplus.NormalizedTable;
+import com.fs.tabulaplus.PageCache;
+import com.fs.tabulaplus.PdfMultiSectionLocator;
+import com.fs.tabulaplus.PdfSection;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+import technology.tabula.ObjectExtractor;
+import technology.tabula.Page;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a normalized table from page areas that have already been located, with each extraction algorithm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class NormalizedTableBenchmark {
+    @Param({"TEXT_ALGORITHM", "SPREADSHEET_ALGORITHM", "AUTO_ALGORITHM"})
+    public String algorithm;
+
+    private int algorithmId;
+
+    private List<List<Page>> pageAreasOfSections;
+
+    @Setup
+    public void setUp(DocumentState documentState) throws Exception
+    {
+        algorithmId = NormalizedTable.class.getField(algorithm).getInt(null);
+
+        PDDocument pdDocument = PDDocument.load(documentState.pdfFile);
+        try {
+            if (pdDocument.isEncrypted())
+            {
+                pdDocument.decrypt("");
+            }
+            ObjectExtractor oe = new ObjectExtractor(pdDocument);
+            PageCache pageCache = new PageCache(oe);
+            PdfMultiSectionLocator locator = new PdfMultiSectionLocator(pageCache,
+                    Arrays.asList(documentState.sections));
+            locator.locateSections(pdDocument, pageCache.getPage(1));
+            pageAreasOfSections = new ArrayList<>();
+            for (PdfSection section : documentState.sections)
+            {
+                pageAreasOfSections.add(locator.getPageAreas(section));
+            }
+        } finally {
+            pdDocument.close();
+        }
+    }
+
+    @Benchmark
+    public List<NormalizedTable> createNormalizedTables() throws IOException
+    {
+        List<NormalizedTable> tables = new ArrayList<>();
+        for (List<Page> pageAreas : pageAreasOfSections)
+        {
+            tables.add(new NormalizedTable(pageAreas, algorithmId));
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,42 @@
+package com.fs.tabulaplus.benchmark;
+
+import com.fs.tabulaplus.NormalizedTable;
+import com.fs.tabulaplus.PdfParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a document end to end: loading, locating all sections and building their tables
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class PdfParserBenchmark {
+    private PdfParser pdfParser;
+
+    private DocumentState documentState;
+
+    @Setup
+    public void setUp(DocumentState documentState) throws Exception
+    {
+        this.documentState = documentState;
+        pdfParser = new PdfParser(documentState.rootSection);
+    }
+
+    @Benchmark
+    public Map<String, NormalizedTable> parseFile() throws Exception
+    {
+        return pdfParser.parse(documentState.pdfFile);
+    }
+
+    @Benchmark
+    public Map<String, NormalizedTable> parsePath() throws Exception
+    {
+        return pdfParser.parse(documentState.pdfFile.toPath());
+    }
+}
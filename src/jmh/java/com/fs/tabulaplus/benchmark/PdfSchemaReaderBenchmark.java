@@ -0,0 +1,46 @@
+package com.fs.tabulaplus.benchmark;
+
+import com.fs.tabulaplus.PdfSchemaReader;
+import com.fs.tabulaplus.PdfSection;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading example_2.schema, from the file and from content that is already in memory
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class PdfSchemaReaderBenchmark {
+    private static final String SCHEMA_FILE = "example_2.schema";
+
+    private PdfSchemaReader schemaReader;
+
+    private byte[] schemaContent;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        schemaReader = new PdfSchemaReader();
+        schemaContent = Files.readAllBytes(Paths.get(SCHEMA_FILE));
+    }
+
+    @Benchmark
+    public PdfSection readFile()
+    {
+        return schemaReader.read(SCHEMA_FILE);
+    }
+
+    @Benchmark
+    public PdfSection readContent()
+    {
+        return schemaReader.read(schemaContent);
+    }
+}
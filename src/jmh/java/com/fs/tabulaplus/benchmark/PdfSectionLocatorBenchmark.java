@@ -0,0 +1,76 @@
+package com.fs.tabulaplus.benchmark;
+
+import com.fs.tabulaplus.PageCache;
+import com.fs.tabulaplus.PdfMultiSectionLocator;
+import com.fs.tabulaplus.PdfSection;
+import com.fs.tabulaplus.PdfSectionLocator;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import technology.tabula.ObjectExtractor;
+import technology.tabula.Page;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locating sections in an open document: once per section with PdfSectionLocator, and all sections in a single
+ * pass with PdfMultiSectionLocator
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class PdfSectionLocatorBenchmark {
+    private PDDocument pdDocument;
+    private ObjectExtractor oe;
+    private PdfSection[] sections;
+
+    @Setup
+    public void setUp(DocumentState documentState) throws Exception
+    {
+        pdDocument = PDDocument.load(documentState.pdfFile);
+        if (pdDocument.isEncrypted())
+        {
+            pdDocument.decrypt("");
+        }
+        oe = new ObjectExtractor(pdDocument);
+        sections = documentState.sections;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        oe.close();
+        pdDocument.close();
+    }
+
+    @Benchmark
+    public void locateSection(Blackhole blackhole) throws IOException
+    {
+        PageCache pageCache = new PageCache(oe);
+        for (PdfSection section : sections)
+        {
+            PdfSectionLocator locator = new PdfSectionLocator(pageCache, section);
+            blackhole.consume(locator.locateSection(pdDocument, pageCache.getPage(1)));
+        }
+    }
+
+    @Benchmark
+    public void locateSectionsInOnePass(Blackhole blackhole) throws IOException
+    {
+        PageCache pageCache = new PageCache(oe);
+        PdfMultiSectionLocator locator = new PdfMultiSectionLocator(pageCache, Arrays.asList(sections));
+        locator.locateSections(pdDocument, pageCache.getPage(1));
+        for (PdfSection section : sections)
+        {
+            for (Page pageArea : locator.getLazyPageAreas(section))
+            {
+                blackhole.consume(pageArea);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.fs.tabulaplus.benchmark;
+
+import com.fs.tabulaplus.PdfSection;
+import org.apache.pdfbox.exceptions.COSVisitorException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.edit.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * This class generates statement-like PDF documents of any length for the benchmarks. The first page starts with
+ * an account summary, and a ruled transaction ledger runs from below the summary to the last page. Every page has a
+ * header line on top, so the top margin logic of the section locator is exercised too.
+ */
+final class SyntheticPdf {
+    static final String SUMMARY_TOP = "Account summary";
+    static final String TRANSACTIONS_TOP = "Transaction history";
+    static final String TRANSACTIONS_BOTTOM = "End of transaction history";
+
+    private static final int ROWS_PER_PAGE = 40;
+    private static final float ROW_HEIGHT = 16;
+    private static final float[] COLUMN_X = {50, 130, 360, 460, 550};
+
+    private SyntheticPdf()
+    {
+    }
+
+    /**
+     * This function writes a document with the given number of pages to a temporary file
+     * @param numOfPages
+     * @return
+     * @throws IOException
+     */
+    static File generate(int numOfPages) throws IOException
+    {
+        File file = File.createTempFile("tabulaplus-benchmark-" + numOfPages + "-", ".pdf");
+        file.deleteOnExit();
+
+        PDDocument document = new PDDocument();
+        try {
+            int transactionNumber = 0;
+            for (int pageNumber = 1; pageNumber <= numOfPages; pageNumber++)
+            {
+                PDPage page = new PDPage(PDPage.PAGE_SIZE_A4);
+                document.addPage(page);
+                PDPageContentStream content = new PDPageContentStream(document, page);
+                float top = page.getMediaBox().getHeight() - 40;
+
+                writeLine(content, 50, top, "ACME Bank statement - page " + pageNumber + " of " + numOfPages);
+                float y = top - 40;
+                if (pageNumber == 1)
+                {
+                    writeLine(content, 50, y, SUMMARY_TOP);
+                    writeRow(content, y - ROW_HEIGHT, "Opening balance", "", "", "10,000.00");
+                    writeRow(content, y - 2 * ROW_HEIGHT, "Total credits", "", "", "52,310.25");
+                    writeRow(content, y - 3 * ROW_HEIGHT, "Total debits", "", "", "48,907.10");
+                    writeRow(content, y - 4 * ROW_HEIGHT, "Closing balance", "", "", "13,403.15");
+                    y -= 6 * ROW_HEIGHT;
+                    writeLine(content, 50, y, TRANSACTIONS_TOP);
+                    y -= ROW_HEIGHT;
+                }
+                float ledgerTop = y + ROW_HEIGHT - 4;
+                for (int row = 0; row < ROWS_PER_PAGE && y > 80; row++)
+                {
+                    transactionNumber++;
+                    content.drawLine(COLUMN_X[0], y + ROW_HEIGHT - 4, COLUMN_X[COLUMN_X.length - 1],
+                            y + ROW_HEIGHT - 4);
+                    writeRow(content, y, String.format("%02d/%02d", 1 + transactionNumber % 28,
+                            1 + pageNumber % 12), "Payment reference " + transactionNumber,
+                            transactionNumber % 3 == 0 ? "" : (transactionNumber % 997) + ".50",
+                            (10000 + transactionNumber * 7) + ".25");
+                    y -= ROW_HEIGHT;
+                }
+                for (float x : COLUMN_X)
+                {
+                    content.drawLine(x, y + ROW_HEIGHT - 4, x, ledgerTop);
+                }
+                if (pageNumber == numOfPages)
+                {
+                    writeLine(content, 50, y - ROW_HEIGHT, TRANSACTIONS_BOTTOM);
+                }
+                content.close();
+            }
+            document.save(file);
+        } catch (COSVisitorException e) {
+            throw new IOException(e);
+        } finally {
+            document.close();
+        }
+        return file;
+    }
+
+    /**
+     * @return the sections that can be found in a generated document
+     */
+    static PdfSection[] sections()
+    {
+        PdfSection summary = new PdfSection("Summary", new String[]{SUMMARY_TOP}, null,
+                new String[]{TRANSACTIONS_TOP}, null, false, true, false, true, 0, 0, null,
+                Collections.<PdfSection>emptyList());
+        PdfSection transactions = new PdfSection("Transactions", new String[]{TRANSACTIONS_TOP}, null,
+                new String[]{TRANSACTIONS_BOTTOM}, null, false, true, false, true, 60, 60, null,
+                Collections.<PdfSection>emptyList());
+        return new PdfSection[]{summary, transactions};
+    }
+
+    static PdfSection root()
+    {
+        return new PdfSection("root", null, null, null, null, true, true, true, true, 0, 0, null,
+                Arrays.asList(sections()));
+    }
+
+    private static void writeRow(PDPageContentStream content, float y, String... cells) throws IOException
+    {
+        for (int i = 0; i < cells.length; i++)
+        {
+            writeLine(content, COLUMN_X[i] + 4, y, cells[i]);
+        }
+    }
+
+    private static void writeLine(PDPageContentStream content, float x, float y, String text) throws IOException
+    {
+        if (text.isEmpty())
+        {
+            return;
+        }
+        content.beginText();
+        content.setFont(PDType1Font.HELVETICA, 10);
+        content.moveTextPositionByAmount(x, y);
+        content.drawString(text);
+        content.endText();
+    }
+}
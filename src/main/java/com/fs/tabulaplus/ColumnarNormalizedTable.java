@@ -0,0 +1,218 @@
+package com.fs.tabulaplus;
+
+import technology.tabula.Page;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is a normalized table that keeps its cells by column instead of by row. The characters of all cells
+ * of a column are appended to one char buffer, and the end offset of every cell is kept in an int array of the
+ * column, so a cell costs 4 bytes besides its characters instead of a String and its char array. Rows that are
+ * shorter than the widest row have empty cells in the missing columns, which are not visible from the rows.
+ *
+ * The rows returned by getRows are views that are created when they are read and only reference the table, so
+ * they can be used like the rows of a NormalizedTable, but they can't be changed. getColumn returns the cells of
+ * a whole column at once.
+ */
+public class ColumnarNormalizedTable extends NormalizedTable {
+    private static final int INITIAL_ROW_CAPACITY = 16;
+    private static final int INITIAL_CHAR_CAPACITY = 256;
+
+    private int numOfRows;
+
+    /**
+     * The number of cells of every row
+     */
+    private int[] rowSizes = new int[INITIAL_ROW_CAPACITY];
+
+    /**
+     * The characters of the cells of every column, one cell after another
+     */
+    private char[][] columnChars = new char[0][];
+
+    /**
+     * The number of characters used in the char buffer of every column
+     */
+    private int[] columnLengths = new int[0];
+
+    /**
+     * columnEnds[column][row] is the offset in the char buffer of the column where the cell of the row ends. The
+     * cell starts where the cell of the previous row ends.
+     */
+    private int[][] columnEnds = new int[0][];
+
+    public ColumnarNormalizedTable()
+    {
+        rows = new RowList();
+    }
+
+    public ColumnarNormalizedTable(Iterable<Page> pageAreas, int algorithm) {
+        this();
+        extractRows(pageAreas, algorithm, row -> addRow(row.texts));
+        trimToSize();
+    }
+
+    /**
+     * This function appends a row to the table. The cells are copied, so the list can be reused by the caller.
+     * @param cells
+     */
+    public void addRow(List<String> cells) {
+        int size = cells.size();
+        if (size > columnChars.length) {
+            addColumns(size);
+        }
+        if (numOfRows == rowSizes.length) {
+            rowSizes = Arrays.copyOf(rowSizes, numOfRows * 2);
+        }
+        for (int column = 0; column < columnChars.length; column++) {
+            if (numOfRows == columnEnds[column].length) {
+                columnEnds[column] = Arrays.copyOf(columnEnds[column], numOfRows * 2);
+            }
+            if (column < size) {
+                append(column, cells.get(column));
+            }
+            columnEnds[column][numOfRows] = columnLengths[column];
+        }
+        rowSizes[numOfRows] = size;
+        numOfRows++;
+    }
+
+    private void addColumns(int numOfColumns) {
+        int oldNumOfColumns = columnChars.length;
+        columnChars = Arrays.copyOf(columnChars, numOfColumns);
+        columnLengths = Arrays.copyOf(columnLengths, numOfColumns);
+        columnEnds = Arrays.copyOf(columnEnds, numOfColumns);
+        for (int column = oldNumOfColumns; column < numOfColumns; column++) {
+            columnChars[column] = new char[INITIAL_CHAR_CAPACITY];
+            // the earlier rows have empty cells in the new column
+            columnEnds[column] = new int[rowSizes.length];
+        }
+    }
+
+    private void append(int column, String text) {
+        int length = columnLengths[column];
+        int newLength = length + text.length();
+        if (newLength > columnChars[column].length) {
+            int capacity = Math.max(newLength, columnChars[column].length * 2);
+            columnChars[column] = Arrays.copyOf(columnChars[column], capacity);
+        }
+        text.getChars(0, text.length(), columnChars[column], length);
+        columnLengths[column] = newLength;
+    }
+
+    /**
+     * This function releases the unused capacity of the buffers. Rows can still be added after it.
+     */
+    public void trimToSize() {
+        rowSizes = Arrays.copyOf(rowSizes, Math.max(numOfRows, 1));
+        for (int column = 0; column < columnChars.length; column++) {
+            columnChars[column] = Arrays.copyOf(columnChars[column], Math.max(columnLengths[column], 1));
+            columnEnds[column] = Arrays.copyOf(columnEnds[column], Math.max(numOfRows, 1));
+        }
+    }
+
+    /**
+     * @return the number of columns of the widest row
+     */
+    public int getNumOfColumns() {
+        return columnChars.length;
+    }
+
+    /**
+     * This function returns the text of a cell
+     * @param row
+     * @param column
+     * @return
+     */
+    public String get(int row, int column) {
+        if (row < 0 || row >= numOfRows) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + numOfRows);
+        }
+        if (column < 0 || column >= rowSizes[row]) {
+            throw new IndexOutOfBoundsException("Column: " + column + ", Size: " + rowSizes[row]);
+        }
+        return getCell(row, column);
+    }
+
+    private String getCell(int row, int column) {
+        int start = row == 0 ? 0 : columnEnds[column][row - 1];
+        return new String(columnChars[column], start, columnEnds[column][row] - start);
+    }
+
+    /**
+     * This function returns the texts of a column of all rows at once
+     * @param column
+     * @return the texts by row, null for the rows that don't have the column
+     */
+    public String[] getColumn(int column) {
+        if (column < 0 || column >= columnChars.length) {
+            throw new IndexOutOfBoundsException("Column: " + column + ", Size: " + columnChars.length);
+        }
+        String[] texts = new String[numOfRows];
+        for (int row = 0; row < numOfRows; row++) {
+            if (column < rowSizes[row]) {
+                texts[row] = getCell(row, column);
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * The rows of the table, created when they are read
+     */
+    private class RowList extends AbstractList<NormalizedRow> {
+        @Override
+        public NormalizedRow get(int row) {
+            if (row < 0 || row >= numOfRows) {
+                throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + numOfRows);
+            }
+            return new RowView(new CellList(row));
+        }
+
+        @Override
+        public int size() {
+            return numOfRows;
+        }
+    }
+
+    /**
+     * The cells of a row
+     */
+    private class CellList extends AbstractList<String> {
+        private final int row;
+
+        CellList(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public String get(int column) {
+            return ColumnarNormalizedTable.this.get(row, column);
+        }
+
+        @Override
+        public int size() {
+            return rowSizes[row];
+        }
+    }
+
+    /**
+     * A row of the table. Its cells can't be changed, so toSimpleString trims copies of them.
+     */
+    private static class RowView extends NormalizedRow {
+        RowView(List<String> texts) {
+            super(texts);
+        }
+
+        @Override
+        public String toSimpleString() {
+            String[] trimmedTexts = new String[texts.size()];
+            for (int i = 0; i < trimmedTexts.length; i++) {
+                trimmedTexts[i] = texts.get(i).trim();
+            }
+            return String.join(" ", trimmedTexts);
+        }
+    }
+}
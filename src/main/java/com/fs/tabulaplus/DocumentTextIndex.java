@@ -0,0 +1,337 @@
+package com.fs.tabulaplus;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import technology.tabula.Rectangle;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * This class records a scan of the text of a PDF document: for every page, the strings written by the text
+ * stripper with the boxes of their first and last glyphs. Sections can be located by replaying the index instead
+ * of stripping the content streams of the document again, which is much faster when the same document is parsed
+ * many times, for example while a schema is being tuned.
+ *
+ * An index is written in a compact binary form: a header with the SHA-256 hash of the document it was built from,
+ * followed by the deflated pages.
+ *
+ * The strings of a page can also be searched by position and by text, through an index of the page that is built
+ * the first time the page is searched.
+ */
+public class DocumentTextIndex {
+    private static final int MAGIC = 0x54504958; // "TPIX"
+    private static final int VERSION = 1;
+
+    /**
+     * The hex SHA-256 hash of the content of the PDF file that the index was built from
+     */
+    private final String contentHash;
+
+    private final int pageCount;
+
+    private final List<IndexedPage> pages;
+
+    private DocumentTextIndex(String contentHash, int pageCount, List<IndexedPage> pages)
+    {
+        this.contentHash = contentHash;
+        this.pageCount = pageCount;
+        this.pages = pages;
+    }
+
+    /**
+     * This function builds the index of a document by stripping the text of all its pages once
+     * @param document
+     * @param contentHash the hash of the content of the PDF file, used to check that the index belongs to a file
+     * @return
+     * @throws IOException
+     */
+    public static DocumentTextIndex build(PDDocument document, String contentHash) throws IOException
+    {
+        Builder builder = new Builder();
+        TextStripper stripper = new TextStripper(1, Collections.<PdfSectionTracker>emptyList());
+        stripper.setIndexBuilder(builder);
+        stripper.getText(document);
+        return new DocumentTextIndex(contentHash, document.getNumberOfPages(), builder.pages);
+    }
+
+    public String getContentHash()
+    {
+        return contentHash;
+    }
+
+    /**
+     * @return the number of pages of the document the index was built from
+     */
+    public int getPageCount()
+    {
+        return pageCount;
+    }
+
+    /**
+     * @return the number of strings in the index
+     */
+    public int getNumOfTextRuns()
+    {
+        int numOfTextRuns = 0;
+        for (IndexedPage page : pages)
+        {
+            numOfTextRuns += page.textRuns.size();
+        }
+        return numOfTextRuns;
+    }
+
+    List<IndexedPage> getPages()
+    {
+        return pages;
+    }
+
+    /**
+     * @param pageNumber
+     * @return the page with the given number, or null if the page is not in the index
+     */
+    IndexedPage getPage(int pageNumber)
+    {
+        // the pages are in the order of their page numbers
+        int low = 0;
+        int high = pages.size() - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int middlePageNumber = pages.get(middle).pageNumber;
+            if (middlePageNumber < pageNumber)
+            {
+                low = middle + 1;
+            }
+            else if (middlePageNumber > pageNumber)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return pages.get(middle);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This function finds the highest string of a page whose top is at or below y and that equals, starts with or
+     * ends with the given text, like an identifier
+     * @param pageNumber
+     * @param text
+     * @param y
+     * @return the string, or null if there is none
+     */
+    public TextRun findFirstBelow(int pageNumber, String text, float y)
+    {
+        IndexedPage page = getPage(pageNumber);
+        return page != null ? page.getGrid().findFirstBelow(text, y) : null;
+    }
+
+    /**
+     * This function finds the strings of a page whose bounding boxes are inside an area, for example a page area
+     * of a section
+     * @param pageNumber
+     * @param area
+     * @return the strings in the order in which they have been written
+     */
+    public List<TextRun> getTextRunsInside(int pageNumber, Rectangle area)
+    {
+        IndexedPage page = getPage(pageNumber);
+        if (page == null)
+        {
+            return Collections.emptyList();
+        }
+        return page.getGrid().getTextRunsInside(area.getLeft(), area.getTop(), area.getRight(), area.getBottom());
+    }
+
+    /**
+     * This function writes the index to an output stream. The stream is not closed.
+     * @param out
+     * @throws IOException
+     */
+    public void write(OutputStream out) throws IOException
+    {
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeUTF(contentHash != null ? contentHash : "");
+        header.flush();
+
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+        DataOutputStream data = new DataOutputStream(deflater);
+        data.writeInt(pageCount);
+        data.writeInt(pages.size());
+        for (IndexedPage page : pages)
+        {
+            data.writeInt(page.pageNumber);
+            data.writeBoolean(page.started);
+            data.writeInt(page.textRuns.size());
+            for (TextRun textRun : page.textRuns)
+            {
+                byte[] text = textRun.getText().getBytes(StandardCharsets.UTF_8);
+                data.writeInt(text.length);
+                data.write(text);
+                writeGlyphBox(data, textRun.getFirst());
+                writeGlyphBox(data, textRun.getLast());
+            }
+        }
+        data.flush();
+        deflater.finish();
+    }
+
+    /**
+     * This function reads an index that has been written by write
+     * @param in
+     * @return
+     * @throws IOException if the stream doesn't contain an index of this version
+     */
+    public static DocumentTextIndex read(InputStream in) throws IOException
+    {
+        DataInputStream header = new DataInputStream(in);
+        if (header.readInt() != MAGIC)
+        {
+            throw new IOException("Not a text index");
+        }
+        int version = header.readInt();
+        if (version != VERSION)
+        {
+            throw new IOException("Unsupported text index version: " + version);
+        }
+        String contentHash = header.readUTF();
+
+        DataInputStream data = new DataInputStream(new InflaterInputStream(in));
+        int pageCount = data.readInt();
+        int numOfPages = data.readInt();
+        List<IndexedPage> pages = new ArrayList<>(numOfPages);
+        for (int i = 0; i < numOfPages; i++)
+        {
+            IndexedPage page = new IndexedPage(data.readInt(), data.readBoolean());
+            int numOfTextRuns = data.readInt();
+            for (int j = 0; j < numOfTextRuns; j++)
+            {
+                byte[] text = new byte[data.readInt()];
+                data.readFully(text);
+                page.textRuns.add(new TextRun(new String(text, StandardCharsets.UTF_8), readGlyphBox(data),
+                        readGlyphBox(data)));
+            }
+            pages.add(page);
+        }
+        return new DocumentTextIndex(contentHash.isEmpty() ? null : contentHash, pageCount, pages);
+    }
+
+    private static void writeGlyphBox(DataOutputStream data, GlyphBox glyphBox) throws IOException
+    {
+        data.writeFloat(glyphBox.getX());
+        data.writeFloat(glyphBox.getY());
+        data.writeFloat(glyphBox.getWidth());
+        data.writeFloat(glyphBox.getHeight());
+    }
+
+    private static GlyphBox readGlyphBox(DataInputStream data) throws IOException
+    {
+        return new GlyphBox(data.readFloat(), data.readFloat(), data.readFloat(), data.readFloat());
+    }
+
+    /**
+     * The strings of one page of the document. A page is started if the text stripper has announced its start,
+     * which it doesn't do for some pages without text.
+     */
+    static class IndexedPage
+    {
+        private final int pageNumber;
+        private final boolean started;
+        private final List<TextRun> textRuns = new ArrayList<>();
+
+        /**
+         * The spatial index of the strings, built when it is first needed
+         */
+        private PageTextGrid grid;
+
+        IndexedPage(int pageNumber, boolean started)
+        {
+            this.pageNumber = pageNumber;
+            this.started = started;
+        }
+
+        int getPageNumber()
+        {
+            return pageNumber;
+        }
+
+        boolean isStarted()
+        {
+            return started;
+        }
+
+        List<TextRun> getTextRuns()
+        {
+            return textRuns;
+        }
+
+        /**
+         * This function returns the strings that may be inside an area: all strings whose bounding boxes overlap
+         * the area
+         * @param area
+         * @return the strings in the order in which they have been written
+         */
+        List<TextRun> getTextRunsIntersecting(Rectangle area)
+        {
+            return getGrid().getTextRunsIntersecting(area.getLeft(), area.getTop(), area.getRight(),
+                    area.getBottom());
+        }
+
+        synchronized PageTextGrid getGrid()
+        {
+            if (grid == null)
+            {
+                grid = new PageTextGrid(textRuns);
+            }
+            return grid;
+        }
+    }
+
+    /**
+     * This class collects the pages of an index while a text stripper scans a document
+     */
+    static class Builder
+    {
+        private final List<IndexedPage> pages = new ArrayList<>();
+
+        private IndexedPage currentPage;
+
+        void startPage(int pageNumber)
+        {
+            currentPage = new IndexedPage(pageNumber, true);
+        }
+
+        void writeString(int pageNumber, TextRun textRun)
+        {
+            getPage(pageNumber).textRuns.add(textRun);
+        }
+
+        void endPage(int pageNumber)
+        {
+            pages.add(getPage(pageNumber));
+            currentPage = null;
+        }
+
+        private IndexedPage getPage(int pageNumber)
+        {
+            if (currentPage == null || currentPage.pageNumber != pageNumber)
+            {
+                currentPage = new IndexedPage(pageNumber, false);
+            }
+            return currentPage;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.fs.tabulaplus;
+
+import org.apache.pdfbox.util.TextPosition;
+
+/**
+ * The position and the size of a glyph on a page, as reported by the text stripper. Only the values that are
+ * needed to locate sections are kept, so that they can be stored in a text index and read back without PDFBox.
+ */
+final class GlyphBox {
+    private final float x;
+    private final float y;
+    private final float width;
+    private final float height;
+
+    GlyphBox(float x, float y, float width, float height)
+    {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    static GlyphBox of(TextPosition textPosition)
+    {
+        return new GlyphBox(textPosition.getX(), textPosition.getY(), textPosition.getWidth(),
+                textPosition.getHeight());
+    }
+
+    float getX()
+    {
+        return x;
+    }
+
+    float getY()
+    {
+        return y;
+    }
+
+    float getWidth()
+    {
+        return width;
+    }
+
+    float getHeight()
+    {
+        return height;
+    }
+}
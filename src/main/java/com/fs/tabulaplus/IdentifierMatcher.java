@@ -0,0 +1,246 @@
+package com.fs.tabulaplus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class matches a string against the identifiers of many sections at once. An identifier matches a string
+ * when the string equals it, starts with it or ends with it, so a match is always anchored at the start or at the
+ * end of the string. The identifiers are compiled into two tries: one with the identifiers as they are, which is
+ * walked from the first character of the string to find the identifiers the string starts with, and one with the
+ * identifiers reversed, which is walked from the last character to find the identifiers the string ends with.
+ * Every string is read at most twice, no matter how many identifiers there are, and only as far as the longest
+ * identifier goes.
+ *
+ * Every distinct identifier gets an id when it is added. A matcher keeps the result of the last match and is not
+ * thread-safe.
+ */
+class IdentifierMatcher {
+    private final Map<String, Integer> identifierIds = new HashMap<>();
+
+    private final List<String> identifiers = new ArrayList<>();
+
+    private Node prefixTrie;
+
+    private Node suffixTrie;
+
+    /**
+     * matched[id] is true if the identifier with that id matches the last string
+     */
+    private boolean[] matched = new boolean[0];
+
+    /**
+     * The ids that are set in matched, so that they can be cleared before the next string
+     */
+    private int[] matchedIds = new int[0];
+    private int numOfMatchedIds;
+
+    /**
+     * This function adds an identifier and returns its id. Adding the same identifier twice returns the same id.
+     * Identifiers can't be added after the matcher has been compiled.
+     * @param identifier
+     * @return
+     */
+    int add(String identifier)
+    {
+        if (prefixTrie != null)
+        {
+            throw new IllegalStateException("The identifier matcher has already been compiled");
+        }
+        Integer id = identifierIds.get(identifier);
+        if (id == null)
+        {
+            id = identifiers.size();
+            identifierIds.put(identifier, id);
+            identifiers.add(identifier);
+        }
+        return id;
+    }
+
+    /**
+     * This function adds a list of identifiers and returns their ids
+     * @param identifiers
+     * @return the ids, or null if there are no identifiers
+     */
+    int[] addAll(String[] identifiers)
+    {
+        if (identifiers == null)
+        {
+            return null;
+        }
+        int[] ids = new int[identifiers.length];
+        for (int i = 0; i < identifiers.length; i++)
+        {
+            ids[i] = add(identifiers[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * @return the distinct identifiers, in the order of their ids
+     */
+    List<String> getIdentifiers()
+    {
+        return identifiers;
+    }
+
+    /**
+     * This function builds the tries from the identifiers that have been added
+     */
+    void compile()
+    {
+        NodeBuilder prefixBuilder = new NodeBuilder();
+        NodeBuilder suffixBuilder = new NodeBuilder();
+        for (int id = 0; id < identifiers.size(); id++)
+        {
+            String identifier = identifiers.get(id);
+            NodeBuilder node = prefixBuilder;
+            for (int i = 0; i < identifier.length(); i++)
+            {
+                node = node.child(identifier.charAt(i));
+            }
+            node.ids.add(id);
+
+            node = suffixBuilder;
+            for (int i = identifier.length() - 1; i >= 0; i--)
+            {
+                node = node.child(identifier.charAt(i));
+            }
+            node.ids.add(id);
+        }
+        prefixTrie = prefixBuilder.build();
+        suffixTrie = suffixBuilder.build();
+        matched = new boolean[identifiers.size()];
+        matchedIds = new int[identifiers.size()];
+    }
+
+    /**
+     * This function finds all identifiers that the text equals, starts with or ends with. The result can be read
+     * with isMatched until the next call.
+     * @param text
+     */
+    void match(String text)
+    {
+        for (int i = 0; i < numOfMatchedIds; i++)
+        {
+            matched[matchedIds[i]] = false;
+        }
+        numOfMatchedIds = 0;
+
+        // identifiers the text starts with
+        Node node = prefixTrie;
+        markAll(node);
+        for (int i = 0; i < text.length() && node != null; i++)
+        {
+            node = node.child(text.charAt(i));
+            markAll(node);
+        }
+
+        // identifiers the text ends with. the empty identifier has been marked by the walk above
+        node = suffixTrie;
+        for (int i = text.length() - 1; i >= 0 && node != null; i--)
+        {
+            node = node.child(text.charAt(i));
+            markAll(node);
+        }
+    }
+
+    private void markAll(Node node)
+    {
+        if (node == null)
+        {
+            return;
+        }
+        for (int id : node.ids)
+        {
+            if (!matched[id])
+            {
+                matched[id] = true;
+                matchedIds[numOfMatchedIds++] = id;
+            }
+        }
+    }
+
+    /**
+     * @param id
+     * @return true if the identifier with this id matches the last string
+     */
+    boolean isMatched(int id)
+    {
+        return matched[id];
+    }
+
+    /**
+     * @param ids
+     * @return true if any of the identifiers with these ids matches the last string
+     */
+    boolean isAnyMatched(int[] ids)
+    {
+        for (int id : ids)
+        {
+            if (matched[id])
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A node of a compiled trie. The children are kept in arrays sorted by their characters.
+     */
+    private static class Node
+    {
+        private static final int[] NO_IDS = new int[0];
+
+        private char[] keys;
+        private Node[] children;
+        private int[] ids = NO_IDS;
+
+        Node child(char key)
+        {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    private static class NodeBuilder
+    {
+        private final TreeMap<Character, NodeBuilder> children = new TreeMap<>();
+        private final List<Integer> ids = new ArrayList<>();
+
+        NodeBuilder child(char key)
+        {
+            NodeBuilder child = children.get(key);
+            if (child == null)
+            {
+                child = new NodeBuilder();
+                children.put(key, child);
+            }
+            return child;
+        }
+
+        Node build()
+        {
+            Node node = new Node();
+            node.keys = new char[children.size()];
+            node.children = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, NodeBuilder> child : children.entrySet())
+            {
+                node.keys[i] = child.getKey();
+                node.children[i] = child.getValue().build();
+                i++;
+            }
+            if (!ids.isEmpty())
+            {
+                node.ids = ids.stream().mapToInt(Integer::intValue).toArray();
+            }
+            return node;
+        }
+    }
+}
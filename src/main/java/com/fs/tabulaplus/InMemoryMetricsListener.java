@@ -0,0 +1,270 @@
+package com.fs.tabulaplus;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A metrics listener that keeps the timings of every stage in histograms and the counts in counters, in memory.
+ * The values can be read at any time, for example by a job that exports them to a monitoring system, and they can
+ * be reset after they have been exported. It is thread-safe.
+ */
+public class InMemoryMetricsListener implements ParserMetricsListener {
+    private final Histogram loadTimes = new Histogram();
+    private final Histogram locateTimes = new Histogram();
+    private final Histogram sectionTimes = new Histogram();
+    private final Histogram parseTimes = new Histogram();
+    private final Histogram pageBuildTimes = new Histogram();
+    private final Histogram totalTimes = new Histogram();
+    private final Histogram allocatedBytes = new Histogram();
+
+    /**
+     * The extraction times of the sections, by section name
+     */
+    private final Map<String, Histogram> sectionTimesByName = new ConcurrentHashMap<>();
+
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong pageCount = new AtomicLong();
+    private final AtomicLong pagesScanned = new AtomicLong();
+    private final AtomicLong pagesUsed = new AtomicLong();
+    private final AtomicLong pagesBuilt = new AtomicLong();
+    private final AtomicLong rowCount = new AtomicLong();
+    private final AtomicLong missingSectionCount = new AtomicLong();
+
+    @Override
+    public void documentLoaded(long loadNanos, long bytesRead) {
+        this.loadTimes.record(loadNanos);
+        this.bytesRead.addAndGet(bytesRead);
+    }
+
+    @Override
+    public void sectionsLocated(long locateNanos, int pagesScanned, int pageCount) {
+        this.locateTimes.record(locateNanos);
+        this.pagesScanned.addAndGet(pagesScanned);
+        this.pageCount.addAndGet(pageCount);
+    }
+
+    @Override
+    public void sectionExtracted(PdfSection section, long extractNanos, int pagesUsed, int rowCount) {
+        this.sectionTimes.record(extractNanos);
+        this.sectionTimesByName.computeIfAbsent(section.getName(), name -> new Histogram()).record(extractNanos);
+        this.pagesUsed.addAndGet(pagesUsed);
+        this.rowCount.addAndGet(rowCount);
+        if (pagesUsed == 0) {
+            this.missingSectionCount.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void documentParsed(long parseNanos, long pagesBuilt, long pageBuildNanos) {
+        this.parseTimes.record(parseNanos);
+        this.pageBuildTimes.record(pageBuildNanos);
+        this.pagesBuilt.addAndGet(pagesBuilt);
+    }
+
+    @Override
+    public void documentClosed(long totalNanos, long allocatedBytes) {
+        this.totalTimes.record(totalNanos);
+        if (allocatedBytes >= 0) {
+            this.allocatedBytes.record(allocatedBytes);
+        }
+    }
+
+    public Histogram getLoadTimes() {
+        return loadTimes;
+    }
+
+    public Histogram getLocateTimes() {
+        return locateTimes;
+    }
+
+    public Histogram getSectionTimes() {
+        return sectionTimes;
+    }
+
+    /**
+     * @return the extraction times of the sections by section name, sorted by name
+     */
+    public Map<String, Histogram> getSectionTimesByName() {
+        return Collections.unmodifiableMap(new TreeMap<>(sectionTimesByName));
+    }
+
+    public Histogram getParseTimes() {
+        return parseTimes;
+    }
+
+    public Histogram getPageBuildTimes() {
+        return pageBuildTimes;
+    }
+
+    public Histogram getTotalTimes() {
+        return totalTimes;
+    }
+
+    /**
+     * @return the bytes allocated on the heap per document, by the parsing thread and the threads that built its
+     * tables in parallel
+     */
+    public Histogram getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return the number of documents that have been parsed
+     */
+    public long getDocumentCount() {
+        return parseTimes.getCount();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getPageCount() {
+        return pageCount.get();
+    }
+
+    public long getPagesScanned() {
+        return pagesScanned.get();
+    }
+
+    public long getPagesUsed() {
+        return pagesUsed.get();
+    }
+
+    public long getPagesBuilt() {
+        return pagesBuilt.get();
+    }
+
+    public long getRowCount() {
+        return rowCount.get();
+    }
+
+    public long getMissingSectionCount() {
+        return missingSectionCount.get();
+    }
+
+    /**
+     * This function clears all histograms and counters
+     */
+    public void reset() {
+        loadTimes.reset();
+        locateTimes.reset();
+        sectionTimes.reset();
+        parseTimes.reset();
+        pageBuildTimes.reset();
+        totalTimes.reset();
+        allocatedBytes.reset();
+        sectionTimesByName.clear();
+        bytesRead.set(0);
+        pageCount.set(0);
+        pagesScanned.set(0);
+        pagesUsed.set(0);
+        pagesBuilt.set(0);
+        rowCount.set(0);
+        missingSectionCount.set(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("documents=").append(getDocumentCount())
+                .append(", bytesRead=").append(getBytesRead())
+                .append(", pages=").append(getPageCount())
+                .append(", pagesScanned=").append(getPagesScanned())
+                .append(", pagesUsed=").append(getPagesUsed())
+                .append(", pagesBuilt=").append(getPagesBuilt())
+                .append(", rows=").append(getRowCount())
+                .append(", missingSections=").append(getMissingSectionCount()).append("\n");
+        sb.append("load: ").append(loadTimes).append("\n");
+        sb.append("locate: ").append(locateTimes).append("\n");
+        sb.append("pageBuild: ").append(pageBuildTimes).append("\n");
+        sb.append("section: ").append(sectionTimes).append("\n");
+        for (Map.Entry<String, Histogram> entry : getSectionTimesByName().entrySet()) {
+            sb.append("section ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        sb.append("parse: ").append(parseTimes).append("\n");
+        sb.append("total: ").append(totalTimes).append("\n");
+        sb.append("allocated: ").append(allocatedBytes);
+        return sb.toString();
+    }
+
+    /**
+     * A histogram of non-negative values with one bucket per power of two. It keeps the exact count, sum, minimum
+     * and maximum, and estimates percentiles from the buckets, so a percentile is at most twice the real value.
+     */
+    public static class Histogram {
+        private final long[] buckets = new long[64];
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max;
+
+        public synchronized void record(long value) {
+            value = Math.max(value, 0);
+            buckets[64 - Long.numberOfLeadingZeros(value) - (value == 0 ? 0 : 1)]++;
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getSum() {
+            return sum;
+        }
+
+        public synchronized long getMin() {
+            return count == 0 ? 0 : min;
+        }
+
+        public synchronized long getMax() {
+            return max;
+        }
+
+        public synchronized double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * This function estimates a percentile as the upper bound of the bucket that contains it
+         * @param percentile a value between 0 and 100
+         * @return
+         */
+        public synchronized long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= Math.max(rank, 1)) {
+                    long upperBound = i >= 62 ? Long.MAX_VALUE : (2L << i) - 1;
+                    return Math.max(Math.min(upperBound, max), getMin());
+                }
+            }
+            return max;
+        }
+
+        public synchronized void reset() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            sum = 0;
+            min = Long.MAX_VALUE;
+            max = 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "count=" + count + ", mean=" + (long) getMean() + ", min=" + getMin() + ", p50=" + getPercentile(50)
+                    + ", p90=" + getPercentile(90) + ", p99=" + getPercentile(99) + ", max=" + max;
+        }
+    }
+}
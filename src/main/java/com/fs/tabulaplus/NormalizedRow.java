@@ -1,6 +1,7 @@
 package com.fs.tabulaplus;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
@@ -8,7 +9,9 @@ import java.util.List;
  */
 public class NormalizedRow {
     public final List<String> texts;
-    private final int STANDARDISED_LENGTH = 30;
+    private static final int STANDARDISED_LENGTH = 30;
+    private static final String SPACES = String.format("%" + STANDARDISED_LENGTH + "s", "");
+    private static final String CELL_SEPARATOR = "  |  ";
 
     public NormalizedRow(List<String> texts) {
         this.texts = texts;
@@ -24,23 +27,66 @@ public class NormalizedRow {
 
     @Override
     public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+
+    public String toTabularString() {
+        StringBuilder sb = new StringBuilder();
+        appendTabularTo(sb);
+        return sb.toString();
+    }
+
+    /**
+     * This function writes the cells of the row separated by "  |  ", the same text as toString returns
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(Appendable out) throws IOException {
         if (texts == null) {
-            return "";
+            return;
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            if (i > 0) {
+                out.append(CELL_SEPARATOR);
+            }
+            out.append(texts.get(i));
         }
-        return String.format("%s", String.join("  |  ", texts));
     }
 
-    public String toTabularString() {
+    /**
+     * This function writes the cells of the row centered in columns of a fixed width and separated by "|", the
+     * same text as toTabularString returns
+     * @param out
+     * @throws IOException
+     */
+    public void writeTabularTo(Appendable out) throws IOException {
         if (texts == null) {
-            return "";
+            return;
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            if (i > 0) {
+                out.append('|');
+            }
+            writeTrimmedOrPadded(out, texts.get(i));
         }
+    }
 
-        ArrayList<String> formatedTexts = new ArrayList<>();
-        for (String text : texts) {
-            formatedTexts.add(trimOrPadStringToFixedLength(text, STANDARDISED_LENGTH));
+    void appendTo(StringBuilder sb) {
+        try {
+            writeTo(sb);
+        } catch (IOException e) { // a string builder doesn't throw
+            throw new UncheckedIOException(e);
         }
+    }
 
-        return String.format("%s", String.join("|", formatedTexts));
+    void appendTabularTo(StringBuilder sb) {
+        try {
+            writeTabularTo(sb);
+        } catch (IOException e) { // a string builder doesn't throw
+            throw new UncheckedIOException(e);
+        }
     }
 
     public String toSimpleString() {
@@ -50,20 +96,22 @@ public class NormalizedRow {
         return String.join(" ", this.texts);
     }
 
-    private String trimOrPadStringToFixedLength(String text, int length) {
-        if (text.length() > length)
-            return text.substring(0, length);
-
-        String new_text = text;
-
-        for (int i=0; i < length - text.length() - 1; i = i + 2) {
-            new_text = " " + new_text + " ";
-        }
-
-        if (new_text.length() == length - 1) {
-            new_text = new_text + " ";
+    /**
+     * This function writes a text cut or padded with spaces to the standardised length. A shorter text is
+     * centered, with the extra space on the right when the padding is odd.
+     * @param out
+     * @param text
+     * @throws IOException
+     */
+    private void writeTrimmedOrPadded(Appendable out, String text) throws IOException {
+        if (text.length() >= STANDARDISED_LENGTH) {
+            out.append(text, 0, STANDARDISED_LENGTH);
+            return;
         }
-
-        return new_text;
+        int padding = STANDARDISED_LENGTH - text.length();
+        int leftPadding = padding / 2;
+        out.append(SPACES, 0, leftPadding);
+        out.append(text);
+        out.append(SPACES, 0, padding - leftPadding);
     }
 }
@@ -5,12 +5,19 @@ import org.slf4j.LoggerFactory;
 import technology.tabula.Page;
 import technology.tabula.RectangularTextContainer;
 import technology.tabula.Table;
+import technology.tabula.Rectangle;
+import technology.tabula.TextElement;
 import technology.tabula.extractors.BasicExtractionAlgorithm;
 import technology.tabula.extractors.SpreadsheetExtractionAlgorithm;
 
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Function;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -25,6 +32,13 @@ public class NormalizedTable {
     public static final int SPREADSHEET_ALGORITHM = 1;
     public static final int AUTO_ALGORITHM = 2;
 
+    /**
+     * The bounds of the ratio between the sizes of the spreadsheet table and the text table of a page area for
+     * which the page area is tabular, the same as tabula's
+     */
+    private static final float MIN_TABULAR_RATIO = 0.65f;
+    private static final float MAX_TABULAR_RATIO = 1 / MIN_TABULAR_RATIO;
+
     private String tableName;
 
     protected List<NormalizedRow> rows;
@@ -35,7 +49,7 @@ public class NormalizedTable {
         rows = new ArrayList<>();
     }
 
-    public NormalizedTable(List<Page> pageAreas, int algorithm) {
+    public NormalizedTable(Iterable<Page> pageAreas, int algorithm) {
         this.algorithm = algorithm;
         rows = new ArrayList<>();
         process(pageAreas);
@@ -49,60 +63,158 @@ public class NormalizedTable {
     /**
      * Collect rows for the normalized table from different page areas
      */
-    private void process(List<Page> pageAreas) {
+    private void process(Iterable<Page> pageAreas) {
+        extractRows(pageAreas, algorithm, this.rows::add);
+    }
+
+    /**
+     * Extract rows from page areas, one page area after another, and hand every row to the consumer as soon as
+     * it has been extracted. The rows are not kept, so the consumer can write them out and drop them right away.
+     * @param pageAreas
+     * @param algorithm
+     * @param consumer
+     */
+    public static void extractRows(Iterable<Page> pageAreas, int algorithm, Consumer<NormalizedRow> consumer) {
+        // the algorithms keep no state between pages, so the same instances are used for all page areas
+        BasicExtractionAlgorithm basicExtractionAlgorithm = new BasicExtractionAlgorithm();
+        SpreadsheetExtractionAlgorithm spreadsheetExtractionAlgorithm = new SpreadsheetExtractionAlgorithm();
         for (Page page : pageAreas) {
             List<? extends Table> pageTables = null;
-            SpreadsheetExtractionAlgorithm spreadsheetExtractionAlgorithm;
-            BasicExtractionAlgorithm basicExtractionAlgorithm;
             switch (algorithm) {
                 case TEXT_ALGORITHM:
-                    basicExtractionAlgorithm = new BasicExtractionAlgorithm();
                     pageTables = basicExtractionAlgorithm.extract(page);
                     break;
                 case SPREADSHEET_ALGORITHM:
-                    spreadsheetExtractionAlgorithm = new SpreadsheetExtractionAlgorithm();
                     pageTables = spreadsheetExtractionAlgorithm.extract(page);
                     break;
                 case AUTO_ALGORITHM:
-                    spreadsheetExtractionAlgorithm = new SpreadsheetExtractionAlgorithm();
-                    if (spreadsheetExtractionAlgorithm.isTabular(page)) {
-                        pageTables = spreadsheetExtractionAlgorithm.extract(page);
-                    } else {
-                        basicExtractionAlgorithm = new BasicExtractionAlgorithm();
-                        pageTables = basicExtractionAlgorithm.extract(page);
-                    }
+                    pageTables = extractAuto(page, basicExtractionAlgorithm, spreadsheetExtractionAlgorithm);
                     break;
             }
             for (Table pageTable : pageTables) {
                 List<List<RectangularTextContainer>> rows = pageTable.getRows();
                 for (List<RectangularTextContainer> row : rows) {
                     List<String> cells = row.stream().map(cell -> cell.getText()).collect(Collectors.toList());
-                    NormalizedRow normalizedRow = new NormalizedRow(cells);
-                    this.rows.add(normalizedRow);
+                    consumer.accept(new NormalizedRow(cells));
                 }
             }
         }
     }
 
+    /**
+     * This function extracts the tables of a page area with the algorithm that suits it, with the same rule as
+     * tabula's SpreadsheetExtractionAlgorithm.isTabular: the first spreadsheet table of the text bounds of the page
+     * area is compared with their first text table. isTabular extracts the text bounds with both algorithms, and
+     * then the chosen algorithm extracts the page area again. The text algorithm only reads the text elements, so
+     * when the text bounds hold the same text elements as the page area, their text tables are the ones of the
+     * page area and are returned instead of being extracted again. A page area without text is not tabular, as
+     * in later versions of tabula, where tabula 0.9.1 fails to find its text bounds.
+     * @param page
+     * @param basicExtractionAlgorithm
+     * @param spreadsheetExtractionAlgorithm
+     * @return
+     */
+    private static List<? extends Table> extractAuto(Page page, BasicExtractionAlgorithm basicExtractionAlgorithm,
+                                                     SpreadsheetExtractionAlgorithm spreadsheetExtractionAlgorithm) {
+        if (page.getText().isEmpty()) {
+            return basicExtractionAlgorithm.extract(page);
+        }
+        Page textBounds = page.getArea(getBounds(page.getText()));
+        List<? extends Table> spreadsheetTables = spreadsheetExtractionAlgorithm.extract(textBounds);
+        if (spreadsheetTables.isEmpty()) {
+            return basicExtractionAlgorithm.extract(page);
+        }
+        // the text elements are compared before the text algorithm runs, because it removes the text elements it
+        // merges from the page area it extracts
+        boolean sameText = textBounds.getText().equals(page.getText());
+        List<? extends Table> basicTables = basicExtractionAlgorithm.extract(textBounds);
+        if (isTabular(spreadsheetTables.get(0), basicTables.get(0))) {
+            return spreadsheetExtractionAlgorithm.extract(page);
+        }
+        return sameText ? basicTables : basicExtractionAlgorithm.extract(page);
+    }
+
+    /**
+     * This function gets the bounds of text elements, the same as tabula's Utils.bounds, which fails when there is
+     * only one text element
+     * @param textElements the text elements, not empty
+     * @return
+     */
+    private static Rectangle getBounds(List<TextElement> textElements) {
+        Rectangle bounds = new Rectangle();
+        bounds.setRect(textElements.get(0).getBounds2D());
+        for (int i = 1; i < textElements.size(); i++) {
+            Rectangle2D.union(textElements.get(i).getBounds2D(), bounds, bounds);
+        }
+        return bounds;
+    }
+
+    /**
+     * This function compares the size of the first spreadsheet table with the size of the first text table of the
+     * text bounds of a page area, the same way as tabula. The page area is tabular when the spreadsheet table has
+     * about as many rows and columns as the text table.
+     * @param spreadsheetTable
+     * @param basicTable
+     * @return
+     */
+    private static boolean isTabular(Table spreadsheetTable, Table basicTable) {
+        float ratio = (((float) spreadsheetTable.getCols().size() / basicTable.getCols().size())
+                + ((float) spreadsheetTable.getRows().size() / basicTable.getRows().size())) / 2;
+        return ratio > MIN_TABULAR_RATIO && ratio < MAX_TABULAR_RATIO;
+    }
+
     @Override
     public String toString()
     {
-        String resultString = "";
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeTo(sb);
+        } catch (IOException e) { // a string builder doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    public String toTabularString()
+    {
+        StringWriter writer = new StringWriter();
+        try {
+            writeTabularTo(writer);
+        } catch (IOException e) { // a string writer doesn't throw
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * This function writes the rows of the table to an output, each one after a line break, the same text as
+     * toString returns. Nothing is buffered, so big tables can be written to a file or a log without building a
+     * string first.
+     * @param out
+     * @throws IOException
+     */
+    public void writeTo(Appendable out) throws IOException
+    {
         for (NormalizedRow row : this.rows)
         {
-            resultString += ('\n' + row.toString());
+            out.append('\n');
+            row.writeTo(out);
         }
-        return resultString;
     }
 
-    public String toTabularString()
+    /**
+     * This function writes the rows of the table to a writer in fixed-width columns, the same text as
+     * toTabularString returns
+     * @param writer
+     * @throws IOException
+     */
+    public void writeTabularTo(Writer writer) throws IOException
     {
-        String resultString = "";
         for (NormalizedRow row : this.rows)
         {
-            resultString += ('\n' + row.toTabularString());
+            writer.write('\n');
+            row.writeTabularTo(writer);
         }
-        return resultString;
     }
 
     public void setTableName(String tableName)
@@ -0,0 +1,132 @@
+package com.fs.tabulaplus;
+
+import technology.tabula.ObjectExtractor;
+import technology.tabula.Page;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the pages that have been extracted from a PDF document, so that every page is turned into
+ * tabula objects (text elements and rulings) at most once while the document is being parsed. The pages are
+ * extracted by tabula's ObjectExtractor, or by any other extractor, like one that only collects text elements. It
+ * is a bounded LRU cache: when it is full, the page that was used least recently is dropped.
+ *
+ * A page cache belongs to one document and is shared by all sections of that document.
+ */
+public class PageCache implements PageSource {
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * The extractor of the pages that are not in the cache
+     */
+    private final PageSource extractor;
+
+    private final Map<Integer, Page> pages;
+
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * The time spent extracting the pages that were not in the cache, in nanoseconds
+     */
+    private long extractNanos;
+
+    public PageCache(ObjectExtractor oe)
+    {
+        this(oe, DEFAULT_CAPACITY);
+    }
+
+    public PageCache(ObjectExtractor oe, int capacity)
+    {
+        this(new PageSource()
+        {
+            @Override
+            public Page getPage(int pageNumber)
+            {
+                return oe.extract(pageNumber);
+            }
+
+            @Override
+            public int getPageCount()
+            {
+                return oe.getPageCount();
+            }
+        }, capacity);
+    }
+
+    /**
+     * Constructor
+     * @param extractor the extractor of the pages, which is only called for the pages that are not in the cache
+     * @param capacity
+     */
+    PageCache(PageSource extractor, final int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("The capacity of a page cache must be positive: " + capacity);
+        }
+        this.extractor = extractor;
+        this.pages = new LinkedHashMap<Integer, Page>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * This function returns the page with the given page number. The page is only extracted from the document
+     * if it is not in the cache.
+     * @param pageNumber
+     * @return
+     */
+    @Override
+    public synchronized Page getPage(int pageNumber)
+    {
+        Page page = pages.get(pageNumber);
+        if (page != null)
+        {
+            hitCount++;
+            return page;
+        }
+        missCount++;
+        long start = System.nanoTime();
+        page = extractor.getPage(pageNumber);
+        extractNanos += System.nanoTime() - start;
+        pages.put(pageNumber, page);
+        return page;
+    }
+
+    @Override
+    public int getPageCount()
+    {
+        return extractor.getPageCount();
+    }
+
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount()
+    {
+        return missCount;
+    }
+
+    /**
+     * @return the time spent extracting the pages that were not in the cache, in nanoseconds
+     */
+    public synchronized long getExtractNanos()
+    {
+        return extractNanos;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "PageCache{size=" + pages.size() + ", hits=" + hitCount + ", misses=" + missCount + "}";
+    }
+}
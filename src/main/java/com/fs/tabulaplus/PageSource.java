@@ -0,0 +1,19 @@
+package com.fs.tabulaplus;
+
+import technology.tabula.Page;
+
+/**
+ * A source of the pages of a PDF document that sections are located on and cropped from
+ */
+interface PageSource {
+    /**
+     * @param pageNumber
+     * @return the page with the given page number
+     */
+    Page getPage(int pageNumber);
+
+    /**
+     * @return the number of pages of the document
+     */
+    int getPageCount();
+}
@@ -0,0 +1,360 @@
+package com.fs.tabulaplus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A spatial index of the strings of one page of a text index. The bounding boxes of the strings are put in a
+ * uniform grid that covers the text of the page, with a few strings per cell, so that the strings in a region are
+ * found by looking at the cells that the region overlaps instead of at every string of the page. The texts of the
+ * strings are also sorted, once as they are and once with their characters reversed, so that the strings that
+ * start or end with a text, the way an identifier matches a string, are found by two binary searches and only
+ * these strings are looked at.
+ *
+ * The cells are packed in two arrays: the strings of cell i are cellTextRuns[cellStarts[i]] to
+ * cellTextRuns[cellStarts[i + 1] - 1]. A string that overlaps many cells is in all of them.
+ */
+final class PageTextGrid
+{
+    /**
+     * The average number of strings per cell that the size of the grid aims at
+     */
+    private static final int TEXT_RUNS_PER_CELL = 8;
+
+    private final List<TextRun> textRuns;
+
+    private final float minX;
+    private final float minY;
+    private final float cellWidth;
+    private final float cellHeight;
+    private final int numOfColumns;
+    private final int numOfRows;
+
+    private final int[] cellStarts;
+    private final int[] cellTextRuns;
+
+    /**
+     * The texts of the strings and their reversed texts, sorted, with the indexes of their strings
+     */
+    private final SortedTexts texts;
+    private final SortedTexts reversedTexts;
+
+    PageTextGrid(List<TextRun> textRuns)
+    {
+        this.textRuns = textRuns;
+        int numOfTextRuns = textRuns.size();
+
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (TextRun textRun : textRuns)
+        {
+            minX = Math.min(minX, textRun.getLeft());
+            minY = Math.min(minY, textRun.getTop());
+            maxX = Math.max(maxX, textRun.getRight());
+            maxY = Math.max(maxY, textRun.getBottom());
+        }
+        int size = numOfTextRuns == 0 ? 1
+                : Math.max(1, (int) Math.ceil(Math.sqrt((double) numOfTextRuns / TEXT_RUNS_PER_CELL)));
+        this.numOfColumns = size;
+        this.numOfRows = size;
+        this.minX = numOfTextRuns == 0 ? 0 : minX;
+        this.minY = numOfTextRuns == 0 ? 0 : minY;
+        this.cellWidth = numOfTextRuns == 0 ? 1 : Math.max((maxX - minX) / size, Float.MIN_NORMAL);
+        this.cellHeight = numOfTextRuns == 0 ? 1 : Math.max((maxY - minY) / size, Float.MIN_NORMAL);
+
+        // count the strings of every cell, then fill the cells
+        this.cellStarts = new int[numOfColumns * numOfRows + 1];
+        for (TextRun textRun : textRuns)
+        {
+            forEachCell(textRun, cell -> cellStarts[cell + 1]++);
+        }
+        for (int cell = 0; cell < numOfColumns * numOfRows; cell++)
+        {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        this.cellTextRuns = new int[cellStarts[numOfColumns * numOfRows]];
+        int[] cellSizes = new int[numOfColumns * numOfRows];
+        for (int i = 0; i < numOfTextRuns; i++)
+        {
+            int textRunIndex = i;
+            forEachCell(textRuns.get(i), cell -> cellTextRuns[cellStarts[cell] + cellSizes[cell]++] = textRunIndex);
+        }
+
+        String[] textsOfTextRuns = new String[numOfTextRuns];
+        String[] reversedTextsOfTextRuns = new String[numOfTextRuns];
+        for (int i = 0; i < numOfTextRuns; i++)
+        {
+            textsOfTextRuns[i] = textRuns.get(i).getText();
+            reversedTextsOfTextRuns[i] = reverse(textsOfTextRuns[i]);
+        }
+        this.texts = new SortedTexts(textsOfTextRuns);
+        this.reversedTexts = new SortedTexts(reversedTextsOfTextRuns);
+    }
+
+    private interface CellConsumer
+    {
+        void accept(int cell);
+    }
+
+    private void forEachCell(TextRun textRun, CellConsumer consumer)
+    {
+        int firstColumn = getColumn(textRun.getLeft());
+        int lastColumn = getColumn(textRun.getRight());
+        int firstRow = getRow(textRun.getTop());
+        int lastRow = getRow(textRun.getBottom());
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            for (int column = firstColumn; column <= lastColumn; column++)
+            {
+                consumer.accept(row * numOfColumns + column);
+            }
+        }
+    }
+
+    private int getColumn(float x)
+    {
+        return clamp((int) Math.floor((x - minX) / cellWidth), numOfColumns);
+    }
+
+    private int getRow(float y)
+    {
+        return clamp((int) Math.floor((y - minY) / cellHeight), numOfRows);
+    }
+
+    private static int clamp(int index, int size)
+    {
+        return Math.min(Math.max(index, 0), size - 1);
+    }
+
+    /**
+     * This function finds the strings whose bounding boxes overlap a region, borders included
+     * @param left
+     * @param top
+     * @param right
+     * @param bottom
+     * @return the strings in the order in which they have been written
+     */
+    List<TextRun> getTextRunsIntersecting(float left, float top, float right, float bottom)
+    {
+        return getTextRuns(left, top, right, bottom, false);
+    }
+
+    /**
+     * This function finds the strings whose bounding boxes are inside a region, borders included
+     * @param left
+     * @param top
+     * @param right
+     * @param bottom
+     * @return the strings in the order in which they have been written
+     */
+    List<TextRun> getTextRunsInside(float left, float top, float right, float bottom)
+    {
+        return getTextRuns(left, top, right, bottom, true);
+    }
+
+    private List<TextRun> getTextRuns(float left, float top, float right, float bottom, boolean inside)
+    {
+        List<TextRun> result = new ArrayList<>();
+        for (int textRunIndex : findTextRuns(left, top, right, bottom, inside))
+        {
+            result.add(textRuns.get(textRunIndex));
+        }
+        return result;
+    }
+
+    /**
+     * This function finds the strings whose bounding boxes overlap a region, borders included
+     * @param left
+     * @param top
+     * @param right
+     * @param bottom
+     * @return the indexes of the strings in the list of the page, in ascending order
+     */
+    int[] findTextRunsIntersecting(float left, float top, float right, float bottom)
+    {
+        return findTextRuns(left, top, right, bottom, false);
+    }
+
+    private int[] findTextRuns(float left, float top, float right, float bottom, boolean inside)
+    {
+        if (textRuns.isEmpty() || left > right || top > bottom)
+        {
+            return new int[0];
+        }
+        int firstColumn = getColumn(left);
+        int lastColumn = getColumn(right);
+        int firstRow = getRow(top);
+        int lastRow = getRow(bottom);
+        int numOfCandidates = 0;
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            numOfCandidates += cellStarts[row * numOfColumns + lastColumn + 1]
+                    - cellStarts[row * numOfColumns + firstColumn];
+        }
+        int[] candidates = new int[numOfCandidates];
+        numOfCandidates = 0;
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            int start = cellStarts[row * numOfColumns + firstColumn];
+            int end = cellStarts[row * numOfColumns + lastColumn + 1];
+            System.arraycopy(cellTextRuns, start, candidates, numOfCandidates, end - start);
+            numOfCandidates += end - start;
+        }
+        // a string that overlaps many cells is a candidate many times
+        Arrays.sort(candidates);
+        int numOfMatches = 0;
+        for (int i = 0; i < candidates.length; i++)
+        {
+            if (i > 0 && candidates[i] == candidates[i - 1])
+            {
+                continue;
+            }
+            TextRun textRun = textRuns.get(candidates[i]);
+            boolean matches = inside
+                    ? textRun.getLeft() >= left && textRun.getRight() <= right
+                        && textRun.getTop() >= top && textRun.getBottom() <= bottom
+                    : intersects(textRun, left, top, right, bottom);
+            if (matches)
+            {
+                candidates[numOfMatches++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, numOfMatches);
+    }
+
+    /**
+     * @param textRun
+     * @param left
+     * @param top
+     * @param right
+     * @param bottom
+     * @return true if the bounding box of the string overlaps the region, borders included
+     */
+    static boolean intersects(TextRun textRun, float left, float top, float right, float bottom)
+    {
+        return textRun.getLeft() <= right && textRun.getRight() >= left
+                && textRun.getTop() <= bottom && textRun.getBottom() >= top;
+    }
+
+    /**
+     * This function finds the strings that equal, start with or end with one of the given texts, the same way an
+     * identifier matches a string
+     * @param texts
+     * @return the indexes of the strings in the list of the page, in ascending order
+     */
+    int[] findTextRuns(Collection<String> texts)
+    {
+        IntStream.Builder candidates = IntStream.builder();
+        for (String text : texts)
+        {
+            this.texts.addTextRunsStartingWith(text, candidates);
+            reversedTexts.addTextRunsStartingWith(reverse(text), candidates);
+        }
+        // a string that starts and ends with a text, or matches many texts, is a candidate many times
+        return candidates.build().sorted().distinct().toArray();
+    }
+
+    /**
+     * This function finds the highest string whose top is at or below y and that equals, starts with or ends with
+     * the given text, the same way an identifier matches a string. Strings at the same height are taken from left
+     * to right.
+     * @param text
+     * @param y
+     * @return the string, or null if there is none
+     */
+    TextRun findFirstBelow(String text, float y)
+    {
+        TextRun firstBelow = null;
+        for (int textRunIndex : findTextRuns(Collections.singletonList(text)))
+        {
+            // the indexes are in ascending order, so of two strings at the same place the first one written wins
+            TextRun textRun = textRuns.get(textRunIndex);
+            if (textRun.getTop() >= y && (firstBelow == null || textRun.getTop() < firstBelow.getTop()
+                    || textRun.getTop() == firstBelow.getTop() && textRun.getLeft() < firstBelow.getLeft()))
+            {
+                firstBelow = textRun;
+            }
+        }
+        return firstBelow;
+    }
+
+    private static String reverse(String text)
+    {
+        // char by char, like the suffix trie of an identifier matcher, without keeping surrogate pairs together
+        char[] chars = new char[text.length()];
+        for (int i = 0; i < chars.length; i++)
+        {
+            chars[i] = text.charAt(chars.length - 1 - i);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Texts sorted in the natural order of strings, in which all texts that start with the same prefix follow each
+     * other, with the indexes of the strings they come from
+     */
+    private static final class SortedTexts
+    {
+        private final String[] texts;
+        private final int[] textRuns;
+
+        SortedTexts(String[] textsOfTextRuns)
+        {
+            Integer[] order = new Integer[textsOfTextRuns.length];
+            for (int i = 0; i < order.length; i++)
+            {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> textsOfTextRuns[a].compareTo(textsOfTextRuns[b]));
+            this.texts = new String[order.length];
+            this.textRuns = new int[order.length];
+            for (int i = 0; i < order.length; i++)
+            {
+                texts[i] = textsOfTextRuns[order[i]];
+                textRuns[i] = order[i];
+            }
+        }
+
+        /**
+         * This function adds the indexes of the strings whose texts start with a prefix
+         * @param prefix
+         * @param textRunIndexes
+         */
+        void addTextRunsStartingWith(String prefix, IntStream.Builder textRunIndexes)
+        {
+            for (int i = findFirst(prefix); i < texts.length && texts[i].startsWith(prefix); i++)
+            {
+                textRunIndexes.add(textRuns[i]);
+            }
+        }
+
+        /**
+         * @param text
+         * @return the index of the first text that is not less than the given text
+         */
+        private int findFirst(String text)
+        {
+            int low = 0;
+            int high = texts.length;
+            while (low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (texts[middle].compareTo(text) < 0)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
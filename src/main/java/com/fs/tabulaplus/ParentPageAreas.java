@@ -0,0 +1,83 @@
+package com.fs.tabulaplus;
+
+import technology.tabula.Page;
+
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * The page areas of a section that has been located, used as the pages of its sub-sections. A sub-section is only
+ * searched for in the page areas of its parent, and its own page areas are cropped from them, so the sub-section
+ * can never reach outside its parent. The page areas of a section are on consecutive pages, one per page.
+ */
+class ParentPageAreas implements PageSource {
+    private final PageSource pageSource;
+
+    private final TreeMap<Integer, Page> pageAreas = new TreeMap<>();
+
+    /**
+     * Constructor
+     * @param pageSource the pages of the document
+     * @param pageAreas the page areas of the parent section, which must not be empty
+     */
+    ParentPageAreas(PageSource pageSource, List<Page> pageAreas)
+    {
+        this.pageSource = pageSource;
+        for (Page pageArea : pageAreas)
+        {
+            this.pageAreas.put(pageArea.getPageNumber(), pageArea);
+        }
+    }
+
+    /**
+     * This function returns the page area of the parent section on the given page, or the whole page if the
+     * parent section is not on it
+     * @param pageNumber
+     * @return
+     */
+    @Override
+    public Page getPage(int pageNumber)
+    {
+        Page pageArea = pageAreas.get(pageNumber);
+        return pageArea != null ? pageArea : pageSource.getPage(pageNumber);
+    }
+
+    @Override
+    public int getPageCount()
+    {
+        return pageSource.getPageCount();
+    }
+
+    /**
+     * @param pageNumber
+     * @return the page area of the parent section on the given page, or null if the parent section is not on it
+     */
+    Page getPageArea(int pageNumber)
+    {
+        return pageAreas.get(pageNumber);
+    }
+
+    int getFirstPageNumber()
+    {
+        return pageAreas.firstKey();
+    }
+
+    int getLastPageNumber()
+    {
+        return pageAreas.lastKey();
+    }
+
+    /**
+     * This function checks whether a glyph is inside the parent section, by looking at the center of the glyph.
+     * The glyph position is the one of the text stripper, whose y is the baseline of the glyph.
+     * @param pageNumber
+     * @param glyphBox
+     * @return
+     */
+    boolean contains(int pageNumber, GlyphBox glyphBox)
+    {
+        Page pageArea = pageAreas.get(pageNumber);
+        return pageArea != null && pageArea.contains(glyphBox.getX() + glyphBox.getWidth() / 2,
+                glyphBox.getY() - glyphBox.getHeight() / 2);
+    }
+}
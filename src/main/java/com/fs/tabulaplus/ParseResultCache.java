@@ -0,0 +1,492 @@
+package com.fs.tabulaplus;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps the results of parsing PDF files, so that a file that is parsed again with the same sections,
+ * for example because it has been uploaded twice, is not loaded and parsed again. A result is keyed by the SHA-256
+ * hash of the content of the file and by a fingerprint of the sections it has been parsed with, so a changed
+ * schema never gets the result of an older one.
+ *
+ * The results are kept in two tiers: the most recently used ones in memory, up to a number of results, and all of
+ * them in a cache directory as "&lt;key&gt;.json" files, up to a total size after which the least recently used
+ * files are deleted. The directory is optional. Both tiers keep the results serialized, so every hit gets its own
+ * tables that the caller is free to change. It is thread-safe.
+ */
+public class ParseResultCache {
+    public static final String FILE_EXTENSION = ".json";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private Logger logger = LoggerFactory.getLogger(ParseResultCache.class);
+
+    /**
+     * The serialized results in memory, from the least recently used to the most recently used
+     */
+    private final LinkedHashMap<String, byte[]> memoryEntries;
+
+    /**
+     * The cache directory, or null if the results are only kept in memory
+     */
+    private final File directory;
+
+    private final long maxDirectorySize;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong diskHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructor for a cache that only keeps results in memory
+     * @param maxMemoryEntries the number of results kept in memory
+     */
+    public ParseResultCache(int maxMemoryEntries)
+    {
+        this(maxMemoryEntries, null, 0);
+    }
+
+    /**
+     * Constructor for a cache that keeps results in memory and in a cache directory
+     * @param maxMemoryEntries the number of results kept in memory
+     * @param directory the cache directory
+     * @param maxDirectorySize the total size in bytes of the result files kept in the directory
+     */
+    public ParseResultCache(int maxMemoryEntries, File directory, long maxDirectorySize)
+    {
+        this.memoryEntries = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maxMemoryEntries;
+            }
+        };
+        this.directory = directory;
+        this.maxDirectorySize = maxDirectorySize;
+    }
+
+    /**
+     * This function computes the key of the result of a PDF file parsed with a list of sections
+     * @param contentHash the hex SHA-256 hash of the content of the PDF file
+     * @param sections the sections of the parser, with their sub-sections
+     * @param ordered true if the parser locates the sections in order
+     * @return
+     */
+    public static String getKey(String contentHash, List<PdfSection> sections, boolean ordered)
+    {
+        return contentHash + "-" + fingerprint(sections, ordered);
+    }
+
+    /**
+     * This function computes the hex SHA-256 hash of everything in a list of sections that has an effect on the
+     * result of parsing. Unlike PdfSection.toString, it covers all properties and doesn't depend on the identity
+     * of the arrays.
+     * @param sections
+     * @param ordered
+     * @return
+     */
+    static String fingerprint(List<PdfSection> sections, boolean ordered)
+    {
+        MessageDigest digest = TextIndexStore.newDigest();
+        try (DataOutputStream data = new DataOutputStream(new DigestOutputStream(new NullOutputStream(), digest))) {
+            data.writeBoolean(ordered);
+            writeSections(data, sections);
+        } catch (IOException e) {
+            // the data is only written to the digest
+            throw new IllegalStateException(e);
+        }
+        return TextIndexStore.toHex(digest.digest());
+    }
+
+    private static void writeSections(DataOutputStream data, List<PdfSection> sections) throws IOException
+    {
+        data.writeInt(sections != null ? sections.size() : -1);
+        if (sections == null)
+        {
+            return;
+        }
+        for (PdfSection section : sections)
+        {
+            writeString(data, section.getName());
+            writeStrings(data, section.getTopIdentifiers());
+            writeStrings(data, section.getBottomIdentifiers());
+            writeString(data, section.getLeftIdentifier());
+            writeString(data, section.getRightIdentifier());
+            data.writeBoolean(section.isTopIncluded());
+            data.writeBoolean(section.isBottomIncluded());
+            data.writeBoolean(section.isLeftIncluded());
+            data.writeBoolean(section.isRightIncluded());
+            data.writeFloat(section.getCustomTopMargin());
+            data.writeFloat(section.getCustomBottomMargin());
+            data.writeInt(section.getTableType() != null ? section.getTableType() : -1);
+            data.writeInt(section.getAlgorithm());
+            data.writeInt(section.getStartPage());
+            data.writeInt(section.getMaxPage());
+            data.writeInt(section.getSearchLastNPages());
+            data.writeBoolean(section.isOrdered());
+            writeSections(data, section.getChildSections());
+        }
+    }
+
+    private static void writeStrings(DataOutputStream data, String[] strings) throws IOException
+    {
+        data.writeInt(strings != null ? strings.length : -1);
+        if (strings != null)
+        {
+            for (String string : strings)
+            {
+                writeString(data, string);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String string) throws IOException
+    {
+        data.writeBoolean(string != null);
+        if (string != null)
+        {
+            data.writeUTF(string);
+        }
+    }
+
+    /**
+     * This function returns the result with the given key
+     * @param key
+     * @param columnar true if the tables should be ColumnarNormalizedTable
+     * @return the tables by section name, in the order in which they have been put, or null if the cache doesn't
+     * have the result
+     */
+    public Map<String, NormalizedTable> get(String key, boolean columnar)
+    {
+        byte[] serialized;
+        synchronized (memoryEntries)
+        {
+            serialized = memoryEntries.get(key);
+        }
+        if (serialized == null && directory != null)
+        {
+            serialized = readFile(key);
+            if (serialized != null)
+            {
+                diskHitCount.incrementAndGet();
+                synchronized (memoryEntries)
+                {
+                    memoryEntries.put(key, serialized);
+                }
+            }
+        }
+        if (serialized != null)
+        {
+            try {
+                Map<String, NormalizedTable> tables = deserialize(serialized, columnar);
+                hitCount.incrementAndGet();
+                return tables;
+            } catch (IOException e) {
+                logger.warn("Can't read the cached result " + key + ": " + e.getMessage());
+                remove(key);
+            }
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * This function puts a result in the cache. A result that can't be written to the cache directory is only kept
+     * in memory, because parsing goes on without the cache.
+     * @param key
+     * @param tables
+     */
+    public void put(String key, Map<String, NormalizedTable> tables)
+    {
+        byte[] serialized;
+        try {
+            serialized = serialize(tables);
+        } catch (IOException e) {
+            // the tables are only written to memory
+            throw new IllegalStateException(e);
+        }
+        synchronized (memoryEntries)
+        {
+            memoryEntries.put(key, serialized);
+        }
+        if (directory != null)
+        {
+            writeFile(key, serialized);
+        }
+    }
+
+    private void remove(String key)
+    {
+        synchronized (memoryEntries)
+        {
+            memoryEntries.remove(key);
+        }
+        if (directory != null)
+        {
+            getFile(key).delete();
+        }
+    }
+
+    /**
+     * This function removes all results from memory. The files in the cache directory are kept.
+     */
+    public void clearMemory()
+    {
+        synchronized (memoryEntries)
+        {
+            memoryEntries.clear();
+        }
+    }
+
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    /**
+     * @return the number of hits that have been read from the cache directory
+     */
+    public long getDiskHitCount()
+    {
+        return diskHitCount.get();
+    }
+
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        int size;
+        synchronized (memoryEntries)
+        {
+            size = memoryEntries.size();
+        }
+        return "memoryEntries=" + size + ", hits=" + getHitCount() + ", diskHits=" + getDiskHitCount()
+                + ", misses=" + getMissCount();
+    }
+
+    private File getFile(String key)
+    {
+        return new File(directory, key + FILE_EXTENSION);
+    }
+
+    private byte[] readFile(String key)
+    {
+        File file = getFile(key);
+        if (!file.isFile())
+        {
+            return null;
+        }
+        try {
+            byte[] serialized = Files.readAllBytes(file.toPath());
+            // the modification time tells which files have been used least recently
+            file.setLastModified(System.currentTimeMillis());
+            return serialized;
+        } catch (IOException e) {
+            logger.warn("Can't read the cached result " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * This function writes a result to a temporary file that is then moved to the result file, so that readers
+     * never see a partly written result, and then deletes the least recently used files while the directory is
+     * too big
+     */
+    private void writeFile(String key, byte[] serialized)
+    {
+        File file = getFile(key);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            tempFile = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+            Files.write(tempFile, serialized);
+            try {
+                Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+        } catch (IOException e) {
+            logger.warn("Can't write the cached result " + file + ": " + e.getMessage());
+        } finally {
+            if (tempFile != null) {
+                tempFile.toFile().delete();
+            }
+        }
+        evictFiles();
+    }
+
+    private synchronized void evictFiles()
+    {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files == null)
+        {
+            return;
+        }
+        long size = 0;
+        for (File file : files)
+        {
+            size += file.length();
+        }
+        if (size <= maxDirectorySize)
+        {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files)
+        {
+            if (size <= maxDirectorySize)
+            {
+                break;
+            }
+            long length = file.length();
+            if (file.delete())
+            {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * This function serializes a result as
+     * [{"key":"Table_7","name":"Table 7","rows":[["...","..."],...]},...]
+     * @param tables
+     * @return
+     * @throws IOException
+     */
+    static byte[] serialize(Map<String, NormalizedTable> tables) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            for (Map.Entry<String, NormalizedTable> entry : tables.entrySet())
+            {
+                NormalizedTable table = entry.getValue();
+                generator.writeStartObject();
+                generator.writeStringField("key", entry.getKey());
+                generator.writeStringField("name", table.getTableName());
+                generator.writeArrayFieldStart("rows");
+                for (NormalizedRow row : table.getRows())
+                {
+                    generator.writeStartArray();
+                    for (int i = 0; i < row.size(); i++)
+                    {
+                        generator.writeString(row.get(i));
+                    }
+                    generator.writeEndArray();
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        return out.toByteArray();
+    }
+
+    static Map<String, NormalizedTable> deserialize(byte[] serialized, boolean columnar) throws IOException
+    {
+        Map<String, NormalizedTable> tables = new LinkedHashMap<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(serialized)) {
+            expect(parser, JsonToken.START_ARRAY);
+            while (parser.nextToken() == JsonToken.START_OBJECT)
+            {
+                String key = null;
+                NormalizedTable table = columnar ? new ColumnarNormalizedTable() : new NormalizedTable();
+                while (parser.nextToken() == JsonToken.FIELD_NAME)
+                {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("key".equals(field))
+                    {
+                        key = parser.getValueAsString();
+                    }
+                    else if ("name".equals(field))
+                    {
+                        table.setTableName(parser.getValueAsString());
+                    }
+                    else if ("rows".equals(field))
+                    {
+                        readRows(parser, table);
+                        if (table instanceof ColumnarNormalizedTable)
+                        {
+                            ((ColumnarNormalizedTable) table).trimToSize();
+                        }
+                    }
+                    else
+                    {
+                        parser.skipChildren();
+                    }
+                }
+                tables.put(key, table);
+            }
+        }
+        return tables;
+    }
+
+    private static void readRows(JsonParser parser, NormalizedTable table) throws IOException
+    {
+        while (parser.nextToken() == JsonToken.START_ARRAY)
+        {
+            List<String> cells = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY)
+            {
+                cells.add(parser.getValueAsString());
+            }
+            if (table instanceof ColumnarNormalizedTable)
+            {
+                ((ColumnarNormalizedTable) table).addRow(cells);
+            }
+            else
+            {
+                table.getRows().add(new NormalizedRow(cells));
+            }
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) throws IOException
+    {
+        if (parser.nextToken() != token)
+        {
+            throw new IOException("Not a cached result: expected " + token + " at " + parser.getCurrentLocation());
+        }
+    }
+
+    private static class NullOutputStream extends OutputStream
+    {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.fs.tabulaplus;
+
+/**
+ * A listener that receives the timings and counts of the stages of parsing a PDF document, so that they can be
+ * exported to a monitoring system. All times are in nanoseconds.
+ *
+ * The stages of a document are reported in this order: documentLoaded (only when the parser loads the document
+ * itself), sectionsLocated, sectionExtracted for every section, documentParsed and documentClosed (only when the
+ * parser loads the document itself). When the tables are built in parallel, sectionExtracted is called from the
+ * threads of the executor, and when documents are parsed at the same time every function can be called
+ * concurrently, so implementations must be thread-safe.
+ */
+public interface ParserMetricsListener {
+    /**
+     * A listener that ignores everything. This is the listener of a parser that has no other listener set.
+     */
+    ParserMetricsListener NO_OP = new ParserMetricsListener() {
+    };
+
+    /**
+     * This function gets called when a document has been loaded by PDFBox
+     * @param loadNanos the time spent loading the document
+     * @param bytesRead the size of the document file
+     */
+    default void documentLoaded(long loadNanos, long bytesRead) {
+    }
+
+    /**
+     * This function gets called when the text of the document has been stripped to locate the sections. When the
+     * sub-sections of a tree of sections are extracted, it is called again every time the sub-sections of a
+     * section are located.
+     * @param locateNanos the time spent stripping the text and matching the identifiers
+     * @param pagesScanned the number of pages that have been stripped
+     * @param pageCount the number of pages of the document for the top-level sections, or 0 for sub-sections, so
+     *                  that the pages of a document are counted once
+     */
+    default void sectionsLocated(long locateNanos, int pagesScanned, int pageCount) {
+    }
+
+    /**
+     * This function gets called when the rows of a section have been extracted. When the tables are built one
+     * after another, the page areas are extracted while the rows are, so the time includes building the pages that
+     * weren't cached yet. In parallel mode the page areas are extracted before, and the time is only the one of
+     * the table extraction.
+     * @param section
+     * @param extractNanos the time spent extracting the rows of the section
+     * @param pagesUsed the number of page areas of the section, 0 if the section doesn't exist in the document
+     * @param rowCount the number of rows of the section
+     */
+    default void sectionExtracted(PdfSection section, long extractNanos, int pagesUsed, int rowCount) {
+    }
+
+    /**
+     * This function gets called when all sections of a document have been extracted
+     * @param parseNanos the time spent locating and extracting all sections
+     * @param pagesBuilt the number of pages that have been built by the object extractor
+     * @param pageBuildNanos the part of parseNanos spent building pages with the object extractor
+     */
+    default void documentParsed(long parseNanos, long pagesBuilt, long pageBuildNanos) {
+    }
+
+    /**
+     * This function gets called when a document that has been loaded by the parser is closed
+     * @param totalNanos the time from the start of loading the document to closing it
+     * @param allocatedBytes the bytes allocated on the heap while the document was open, by the parsing thread and
+     *                       by the threads that built its tables in parallel, or -1 if the JVM can't measure it.
+     *                       This is a total, not the peak size of the heap.
+     */
+    default void documentClosed(long totalNanos, long allocatedBytes) {
+    }
+}
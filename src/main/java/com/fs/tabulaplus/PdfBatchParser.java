@@ -0,0 +1,130 @@
+package com.fs.tabulaplus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * This class parses many PDF documents with the same PdfParser. The schema of the parser is read once and shared
+ * by all workers, which only read it.
+ *
+ * The documents are parsed by a fixed number of worker threads. At most maxDocumentsInFlight documents are loaded
+ * or waiting to be handed to the callback at any time; when that limit is reached, parseAll blocks before taking
+ * the next path, which caps the heap used by loaded documents. Each document is parsed on its own: an error in one
+ * document is reported in its result and doesn't stop the rest of the batch. Every path gets exactly one result,
+ * even when PDFBox throws an Error; an error of the virtual machine, such as an OutOfMemoryError, is thrown again on
+ * the worker thread after its result has been handled.
+ */
+public class PdfBatchParser implements Closeable {
+    private Logger logger = LoggerFactory.getLogger(PdfBatchParser.class);
+
+    private final PdfParser pdfParser;
+
+    private final ExecutorService workers;
+
+    private final int maxDocumentsInFlight;
+
+    /**
+     * Constructor
+     * @param schemaFile the schema that is shared by all documents of the batch
+     * @param parallelism the number of documents that are parsed at the same time
+     * @param maxDocumentsInFlight the maximum number of documents that are being parsed or whose results are being
+     *                             handled at the same time
+     */
+    public PdfBatchParser(String schemaFile, int parallelism, int maxDocumentsInFlight)
+    {
+        this(new PdfParser(schemaFile), parallelism, maxDocumentsInFlight);
+    }
+
+    public PdfBatchParser(PdfParser pdfParser, int parallelism, int maxDocumentsInFlight)
+    {
+        if (parallelism < 1 || maxDocumentsInFlight < parallelism)
+        {
+            throw new IllegalArgumentException("Invalid batch limits: parallelism=" + parallelism
+                    + ", maxDocumentsInFlight=" + maxDocumentsInFlight);
+        }
+        this.pdfParser = pdfParser;
+        this.maxDocumentsInFlight = maxDocumentsInFlight;
+        this.workers = Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * This function parses all documents and hands the result of each document to the callback as soon as the
+     * document is done. The callback is called from the worker threads, so it must be thread-safe. The results
+     * don't come in the order of the paths. This function returns when all results have been handled.
+     * @param pdfFiles
+     * @param callback
+     * @throws InterruptedException
+     */
+    public void parseAll(Iterable<Path> pdfFiles, Consumer<PdfBatchResult> callback) throws InterruptedException
+    {
+        Semaphore documentsInFlight = new Semaphore(maxDocumentsInFlight);
+        for (Path pdfFile : pdfFiles)
+        {
+            // wait here while too many documents are in flight
+            documentsInFlight.acquire();
+            try {
+                workers.execute(() -> {
+                    try {
+                        parseOne(pdfFile, callback);
+                    } finally {
+                        documentsInFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                documentsInFlight.release();
+                throw e;
+            }
+        }
+        // all documents are done when every permit is back
+        documentsInFlight.acquire(maxDocumentsInFlight);
+        documentsInFlight.release(maxDocumentsInFlight);
+    }
+
+    private void parseOne(Path pdfFile, Consumer<PdfBatchResult> callback)
+    {
+        PdfSectionResult sectionResult;
+        try {
+            sectionResult = pdfParser.parseResult(pdfFile.toFile());
+        } catch (Throwable e) { // a broken document must not stop the batch
+            logger.error("Failed to parse " + pdfFile, e);
+            handle(new PdfBatchResult(pdfFile, null, true, e), callback);
+            if (e instanceof VirtualMachineError)
+            {
+                throw (VirtualMachineError) e;
+            }
+            return;
+        }
+        if (sectionResult.hasFailed())
+        {
+            logger.warn("Sections of " + pdfFile + " failed, their tables are empty or incomplete");
+        }
+        handle(new PdfBatchResult(pdfFile, sectionResult.getChildTables(), sectionResult.hasFailed(), null),
+                callback);
+    }
+
+    private void handle(PdfBatchResult result, Consumer<PdfBatchResult> callback)
+    {
+        try {
+            callback.accept(result);
+        } catch (RuntimeException e) {
+            logger.error("Failed to handle the result of " + result.getPath(), e);
+        }
+    }
+
+    /**
+     * Stop the worker threads. Documents that are still being parsed are finished first.
+     */
+    @Override
+    public void close()
+    {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,58 @@
+package com.fs.tabulaplus;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * This class holds the outcome of parsing one document of a batch. It contains either the tables extracted from
+ * the document or the error that stopped the document from being parsed. The tables of a document whose sections
+ * failed are kept, but the document is not successful.
+ */
+public class PdfBatchResult {
+    private final Path path;
+    private final Map<String, NormalizedTable> tables;
+    private final boolean failed;
+    private final Throwable error;
+
+    PdfBatchResult(Path path, Map<String, NormalizedTable> tables, boolean failed, Throwable error)
+    {
+        this.path = path;
+        this.tables = tables;
+        this.failed = failed;
+        this.error = error;
+    }
+
+    public Path getPath()
+    {
+        return path;
+    }
+
+    /**
+     * @return the mapping between sections' names and sections' data, or null if the document failed
+     */
+    public Map<String, NormalizedTable> getTables()
+    {
+        return tables;
+    }
+
+    /**
+     * @return the error that stopped the document from being parsed, or null if the document has been parsed
+     */
+    public Throwable getError()
+    {
+        return error;
+    }
+
+    /**
+     * @return true if the document failed, or if an error has left tables of the document empty or incomplete
+     */
+    public boolean hasFailed()
+    {
+        return failed;
+    }
+
+    public boolean isSuccessful()
+    {
+        return !failed;
+    }
+}
@@ -0,0 +1,279 @@
+package com.fs.tabulaplus;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import technology.tabula.ObjectExtractor;
+import technology.tabula.Page;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class locates many PDF sections at once. Instead of scanning the whole document once per section like
+ * PdfSectionLocator does, it scans the document a single time and records the positions of the identifiers of
+ * all sections during that pass. The page areas of each section are then computed from the recorded positions
+ * without touching the document again.
+ */
+public class PdfMultiSectionLocator {
+    /**
+     * Pages of the document are taken from this source, usually a page cache, so that a page is only extracted
+     * once for all sections
+     */
+    private final PageSource pageSource;
+
+    /**
+     * The page areas of the parent section of the sections, or null if the sections are searched in the whole
+     * document
+     */
+    private final ParentPageAreas parentPageAreas;
+
+    private final List<PdfSection> pdfSections;
+
+    /**
+     * The trackers of the sections, in the same order as the sections. They are only available after the
+     * sections have been located.
+     */
+    private final Map<PdfSection, PdfSectionTracker> trackers = new LinkedHashMap<>();
+
+    /**
+     * True if the scan should stop as soon as all sections are resolved
+     */
+    private boolean shortCircuit;
+
+    /**
+     * True if the sections are listed in the order in which they appear in the document
+     */
+    private boolean ordered;
+
+    /**
+     * The number of pages that have been scanned by the last call of locateSections
+     */
+    private int numOfScannedPages;
+
+    /**
+     * Constructor
+     * @param oe
+     * @param sections
+     */
+    public PdfMultiSectionLocator(ObjectExtractor oe, List<PdfSection> sections)
+    {
+        this(new PageCache(oe), sections);
+    }
+
+    /**
+     * Constructor
+     * @param pageCache
+     * @param sections
+     */
+    public PdfMultiSectionLocator(PageCache pageCache, List<PdfSection> sections)
+    {
+        this.pageSource = pageCache;
+        this.pdfSections = sections;
+        this.parentPageAreas = null;
+    }
+
+    /**
+     * Constructor for the sub-sections of a section that has been located. The sub-sections are only searched for
+     * inside the page areas of the parent section, and their page areas are cropped from the parent's.
+     * @param pageCache
+     * @param parentPageAreas the page areas of the parent section, which must not be empty
+     * @param sections the sub-sections
+     */
+    public PdfMultiSectionLocator(PageCache pageCache, List<Page> parentPageAreas, List<PdfSection> sections)
+    {
+        this.parentPageAreas = new ParentPageAreas(pageCache, parentPageAreas);
+        this.pageSource = this.parentPageAreas;
+        this.pdfSections = sections;
+    }
+
+    /**
+     * When short circuit is on, the scan stops as soon as the identifiers needed by the sections have
+     * been found, instead of going on to the last page of the document. The page areas are the same as the ones
+     * found by a full scan.
+     * @param shortCircuit
+     */
+    public void setShortCircuit(boolean shortCircuit)
+    {
+        this.shortCircuit = shortCircuit;
+    }
+
+    /**
+     * When the sections are ordered, every section is searched from the place where the previous section ends
+     * instead of from the start page, so that identifiers of a section that also appear in earlier sections are
+     * not mistaken for its own. Sections that are not found after the previous one are searched again in the
+     * whole document by a second scan.
+     * @param ordered
+     */
+    public void setOrdered(boolean ordered)
+    {
+        this.ordered = ordered;
+    }
+
+    /**
+     * This function scans the document once, starting from the start page, and records the identifier positions
+     * of all sections. Only the pages within the page ranges of the sections are scanned.
+     * @param document
+     * @param startPage
+     * @throws IOException
+     */
+    public void locateSections(PDDocument document, Page startPage) throws IOException
+    {
+        locateSections(document, startPage.getPageNumber());
+    }
+
+    /**
+     * This function locates the sections like the other locateSections does, but takes the number of the start
+     * page, so that the start page doesn't have to be extracted
+     * @param document
+     * @param startPageNumber
+     * @throws IOException
+     */
+    public void locateSections(PDDocument document, int startPageNumber) throws IOException
+    {
+        trackers.clear();
+        numOfScannedPages = strip(document, startPageNumber, createTrackers(pdfSections, startPageNumber), ordered);
+        if (ordered)
+        {
+            List<PdfSection> missingSections = getMissingSections();
+            if (!missingSections.isEmpty())
+            {
+                numOfScannedPages += strip(document, startPageNumber,
+                        createTrackers(missingSections, startPageNumber), false);
+            }
+        }
+    }
+
+    private int strip(PDDocument document, int startPageNumber, List<PdfSectionTracker> sectionTrackers,
+                      boolean orderedTrackers) throws IOException
+    {
+        TextStripper stripper = new TextStripper(startPageNumber, sectionTrackers, orderedTrackers);
+        stripper.setShortCircuit(shortCircuit);
+        stripper.getText(document);
+        return stripper.getNumOfScannedPages();
+    }
+
+    /**
+     * This function locates the sections like the other locateSections does, but replays the strings recorded in
+     * a text index instead of stripping the text of the document again. Sub-sections only replay the strings that
+     * the spatial index of every page finds in the page areas of their parent.
+     * @param index the text index of the document
+     * @param startPage
+     */
+    public void locateSections(DocumentTextIndex index, Page startPage)
+    {
+        locateSections(index, startPage.getPageNumber());
+    }
+
+    public void locateSections(DocumentTextIndex index, int startPageNumber)
+    {
+        trackers.clear();
+        numOfScannedPages = new SectionTrackerGroup(createTrackers(pdfSections, startPageNumber), ordered)
+                .replay(index, shortCircuit, parentPageAreas);
+        if (ordered)
+        {
+            List<PdfSection> missingSections = getMissingSections();
+            if (!missingSections.isEmpty())
+            {
+                numOfScannedPages += new SectionTrackerGroup(createTrackers(missingSections, startPageNumber))
+                        .replay(index, shortCircuit, parentPageAreas);
+            }
+        }
+    }
+
+    /**
+     * This function creates a new tracker for every given section. A tracker replaces the previous tracker of
+     * its section, if there is one.
+     * @param sections
+     * @param startPageNumber
+     * @return the trackers, in the same order as the sections
+     */
+    private List<PdfSectionTracker> createTrackers(List<PdfSection> sections, int startPageNumber)
+    {
+        List<PdfSectionTracker> sectionTrackers = new ArrayList<>();
+        for (PdfSection section : sections)
+        {
+            PdfSectionTracker tracker = new PdfSectionTracker(section, startPageNumber, pageSource.getPageCount());
+            if (parentPageAreas != null)
+            {
+                tracker.restrictTo(parentPageAreas);
+            }
+            trackers.put(section, tracker);
+            sectionTrackers.add(tracker);
+        }
+        return sectionTrackers;
+    }
+
+    /**
+     * @return the sections whose start has not been found by the last scan
+     */
+    private List<PdfSection> getMissingSections()
+    {
+        List<PdfSection> missingSections = new ArrayList<>();
+        for (PdfSectionTracker tracker : trackers.values())
+        {
+            if (!tracker.isFound())
+            {
+                missingSections.add(tracker.getPdfSection());
+            }
+        }
+        return missingSections;
+    }
+
+    /**
+     * @return the number of pages that have been scanned to locate the sections
+     */
+    public int getNumOfScannedPages()
+    {
+        return numOfScannedPages;
+    }
+
+    /**
+     * This function returns the number of page areas of a section without extracting them
+     * @param section
+     * @return the number of page areas, 0 if the section has not been located
+     */
+    public int getNumOfPageAreas(PdfSection section)
+    {
+        PdfSectionTracker tracker = trackers.get(section);
+        if (tracker == null)
+        {
+            return 0;
+        }
+        return new PdfSectionLocator(pageSource, tracker).getNumOfPageAreas();
+    }
+
+    /**
+     * This function returns the page areas that contain a section. The section must be one of the sections that
+     * have been located.
+     * @param section
+     * @return
+     */
+    public List<Page> getPageAreas(PdfSection section)
+    {
+        PdfSectionTracker tracker = trackers.get(section);
+        if (tracker == null)
+        {
+            return Collections.emptyList();
+        }
+        return new PdfSectionLocator(pageSource, tracker).getPageAreas();
+    }
+
+    /**
+     * This function returns the page areas that contain a section as an iterable that extracts and crops every
+     * page area only when it is reached, so that page areas which have been handled can be released
+     * @param section
+     * @return
+     */
+    public Iterable<Page> getLazyPageAreas(PdfSection section)
+    {
+        PdfSectionTracker tracker = trackers.get(section);
+        if (tracker == null)
+        {
+            return Collections.emptyList();
+        }
+        return new PdfSectionLocator(pageSource, tracker).getLazyPageAreas();
+    }
+}
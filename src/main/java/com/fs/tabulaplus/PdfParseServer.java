@@ -0,0 +1,513 @@
+package com.fs.tabulaplus;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+/**
+ * A small HTTP server that keeps a JVM with its schemas and its worker threads warm, so that documents can be parsed
+ * one after another without paying the start of a JVM, class loading and schema reading for every document. It
+ * only uses the HTTP server of the JDK. The endpoints are:
+ * <ul>
+ * <li>POST /parse?schema=&lt;name&gt; with the PDF file as body, which parses the file with the schema file
+ * "&lt;name&gt;.schema" of the schema directory and streams back the tables as
+ * {"schema":"...","tables":{"Table_7":{"name":"Table 7","rows":[["...","..."],...]},...}}. With format=ndjson, the
+ * rows are streamed as one JSON object per line instead, like SectionRowExporter.toNdjson writes them. If the
+ * parsing fails once the response has started, the sections that are done are kept and the failure is told by an
+ * "error" field after the tables, or by a last {"error":"..."} line.</li>
+ * <li>GET /ready, which answers 200 once the schemas have been read and 503 before.</li>
+ * <li>GET /metrics, which returns the timings and counts of the parsed documents.</li>
+ * </ul>
+ * At most maxConcurrentRequests documents are parsed at the same time. A parse request that comes when the limit is
+ * reached gets a 503 response right away instead of waiting, so that the caller can retry. A document whose body is
+ * bigger than the maximum body size gets a 413 response, before it is loaded if its Content-Length tells its size.
+ *
+ * Usage: {@code java com.fs.tabulaplus.PdfParseServer 8080 schemas 4}, then
+ * {@code curl --data-binary @sample-tables.pdf "http://localhost:8080/parse?schema=example_2"}
+ */
+public class PdfParseServer implements Closeable {
+    public static final String SCHEMA_FILE_EXTENSION = ".schema";
+
+    public static final long DEFAULT_MAX_BODY_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Schema names can't contain path separators, so that only the files of the schema directory can be used
+     */
+    private static final Pattern SCHEMA_NAME = Pattern.compile("[A-Za-z0-9_.-]+");
+
+    /**
+     * The threads of the server that don't parse documents, so that the readiness and metrics endpoints and the
+     * rejection of parse requests over the limit are served while all workers are busy
+     */
+    private static final int NUM_OF_SPARE_THREADS = 2;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private Logger logger = LoggerFactory.getLogger(PdfParseServer.class);
+
+    private final Path schemaDirectory;
+
+    private final PdfSchemaRegistry schemaRegistry;
+
+    private final InMemoryMetricsListener metricsListener = new InMemoryMetricsListener();
+
+    private final int maxConcurrentRequests;
+
+    private final Semaphore parseSlots;
+
+    /**
+     * The size in bytes of the biggest document that is parsed. PDDocument.load keeps the whole document in
+     * memory, so a bigger body would only risk running the server out of memory.
+     */
+    private volatile long maxBodySize = DEFAULT_MAX_BODY_SIZE;
+
+    private final ExecutorService workers;
+
+    private final HttpServer server;
+
+    private volatile boolean ready;
+
+    /**
+     * Constructor. The server doesn't accept requests before it is started.
+     * @param port the port to listen on, or 0 for any free port
+     * @param schemaDirectory the directory of the schema files
+     * @param maxConcurrentRequests the number of documents that are parsed at the same time
+     * @throws IOException if the port can't be bound
+     */
+    public PdfParseServer(int port, Path schemaDirectory, int maxConcurrentRequests) throws IOException {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("The number of concurrent requests must be positive: "
+                    + maxConcurrentRequests);
+        }
+        this.schemaDirectory = schemaDirectory;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.parseSlots = new Semaphore(maxConcurrentRequests);
+        this.schemaRegistry = new PdfSchemaRegistry();
+        this.workers = Executors.newFixedThreadPool(maxConcurrentRequests + NUM_OF_SPARE_THREADS);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(workers);
+        this.server.createContext("/parse", this::handleParse);
+        this.server.createContext("/ready", this::handleReady);
+        this.server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * This function starts the server and reads all schema files of the schema directory. The server is ready
+     * once they have been read.
+     * @return the number of schema files that could be read
+     * @throws IOException if the schema directory can't be listed
+     */
+    public int start() throws IOException {
+        server.start();
+        List<Path> schemaFiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(schemaDirectory, "*" + SCHEMA_FILE_EXTENSION)) {
+            for (Path file : files) {
+                schemaFiles.add(file);
+            }
+        }
+        int numOfSchemas = schemaRegistry.preload(schemaFiles);
+        ready = true;
+        logger.info("Parse server listening on port " + getPort() + " with " + numOfSchemas + " schemas");
+        return numOfSchemas;
+    }
+
+    /**
+     * @param maxBodySize the size in bytes of the biggest document that is parsed
+     */
+    public void setMaxBodySize(long maxBodySize) {
+        if (maxBodySize < 1) {
+            throw new IllegalArgumentException("The maximum body size must be positive: " + maxBodySize);
+        }
+        this.maxBodySize = maxBodySize;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public InMemoryMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * This function stops the server, waiting a second for the requests that are being handled
+     */
+    @Override
+    public void close() {
+        ready = false;
+        server.stop(1);
+        workers.shutdown();
+    }
+
+    private void handleReady(HttpExchange exchange) throws IOException {
+        try {
+            sendJson(exchange, ready ? 200 : 503, generator -> {
+                generator.writeBooleanField("ready", ready);
+                generator.writeNumberField("schemas", schemaRegistry.size());
+                generator.writeNumberField("activeRequests", maxConcurrentRequests - parseSlots.availablePermits());
+                generator.writeNumberField("maxConcurrentRequests", maxConcurrentRequests);
+            });
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = metricsListener.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleParse(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendError(exchange, 405, "Use POST with the PDF file as body");
+                return;
+            }
+            if (!ready) {
+                sendError(exchange, 503, "The server is starting");
+                return;
+            }
+            if (getContentLength(exchange) > maxBodySize) {
+                sendError(exchange, 413, "The document is bigger than " + maxBodySize + " bytes");
+                return;
+            }
+            Map<String, String> parameters = getQueryParameters(exchange);
+            String schemaName = parameters.get("schema");
+            if (schemaName == null || !SCHEMA_NAME.matcher(schemaName).matches()) {
+                sendError(exchange, 400, "Missing or invalid schema parameter");
+                return;
+            }
+            PdfSection rootSection = schemaRegistry.get(schemaDirectory.resolve(schemaName + SCHEMA_FILE_EXTENSION));
+            if (rootSection == null) {
+                sendError(exchange, 404, "Unknown schema: " + schemaName);
+                return;
+            }
+            if (!parseSlots.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendError(exchange, 503, "Too many concurrent requests");
+                return;
+            }
+            try {
+                parse(exchange, schemaName, rootSection, "ndjson".equals(parameters.get("format")));
+            } finally {
+                parseSlots.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void parse(HttpExchange exchange, String schemaName, PdfSection rootSection, boolean ndjson)
+            throws IOException {
+        PDDocument document;
+        // a body without a Content-Length, or with a wrong one, is cut off at the maximum size while it is read. The
+        // parser of PDFBox skips some errors, so the stream is asked whether it has been cut off too.
+        LimitedInputStream body = new LimitedInputStream(exchange.getRequestBody(), maxBodySize);
+        try {
+            document = PDDocument.load(body);
+        } catch (BodyTooLargeException e) {
+            sendError(exchange, 413, e.getMessage());
+            return;
+        } catch (IOException e) {
+            sendError(exchange, 400, "Not a PDF document: " + e.getMessage());
+            return;
+        } finally {
+            body.close();
+        }
+        if (body.isLimitExceeded()) {
+            document.close();
+            sendError(exchange, 413, "The document is bigger than " + maxBodySize + " bytes");
+            return;
+        }
+
+        PdfParser pdfParser = new PdfParser(rootSection);
+        pdfParser.setMetricsListener(metricsListener);
+        exchange.getResponseHeaders().set("Content-Type",
+                ndjson ? "application/x-ndjson" : "application/json; charset=utf-8");
+        // the response is sent in chunks while the rows are extracted, so its length is not known yet
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            // the status has already been sent, so a failure of the parsing is told in the body: by a last line with
+            // an error in NDJSON, and by an error field next to the tables in JSON
+            if (ndjson) {
+                Exception error;
+                try (SectionRowExporter exporter = SectionRowExporter.toNdjson(out)) {
+                    error = parse(pdfParser, document, exporter);
+                }
+                if (error != null) {
+                    try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+                        generator.writeStartObject();
+                        generator.writeStringField("error", error.toString());
+                        generator.writeEndObject();
+                        generator.writeRaw('\n');
+                    }
+                }
+            } else {
+                try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+                    generator.writeStartObject();
+                    generator.writeStringField("schema", schemaName);
+                    generator.writeObjectFieldStart("tables");
+                    Exception error = parse(pdfParser, document, new JsonTableWriter(generator));
+                    endTables(generator);
+                    if (error != null) {
+                        generator.writeStringField("error", error.toString());
+                    }
+                    generator.writeEndObject();
+                }
+            }
+        } catch (IOException e) {
+            // the response can't be written, usually because the client has gone away
+            logger.error("Exception: ", e);
+        }
+    }
+
+    /**
+     * This function parses a document while its response is being sent
+     * @return the exception that has stopped the parsing, or null if the document has been parsed
+     */
+    private Exception parse(PdfParser pdfParser, PDDocument document, SectionRowHandler rowHandler) {
+        try {
+            pdfParser.parse(document, rowHandler);
+            return null;
+        } catch (Exception e) { // catch all exceptions
+            logger.error("Exception: ", e);
+            return e;
+        }
+    }
+
+    /**
+     * This function ends the tables object of a JSON response, and first the row, the rows and the section that
+     * were being written if the parsing has stopped in the middle of a section
+     */
+    private static void endTables(JsonGenerator generator) throws IOException {
+        // the tables object is the one whose parent, the response object, is at the root
+        while (!generator.getOutputContext().getParent().getParent().inRoot()) {
+            if (generator.getOutputContext().inArray()) {
+                generator.writeEndArray();
+            } else {
+                generator.writeEndObject();
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * A row handler that writes every section as a field of the tables object of the response
+     */
+    private static class JsonTableWriter implements SectionRowHandler {
+        private final JsonGenerator generator;
+
+        JsonTableWriter(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void startSection(PdfSection section) {
+            try {
+                generator.writeObjectFieldStart(section.getNameWithoutSpaces());
+                generator.writeStringField("name", section.getName());
+                generator.writeArrayFieldStart("rows");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void handleRow(PdfSection section, NormalizedRow row) {
+            try {
+                generator.writeStartArray();
+                for (int i = 0; i < row.size(); i++) {
+                    generator.writeString(row.get(i));
+                }
+                generator.writeEndArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void endSection(PdfSection section) {
+            try {
+                generator.writeEndArray();
+                generator.writeEndObject();
+                // the client gets every section as soon as it is done
+                generator.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * @return the Content-Length of the request, or -1 if it has none or it is not a number
+     */
+    private static long getContentLength(HttpExchange exchange) {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * An input stream that fails as soon as more than a number of bytes have been read from it
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+        private boolean limitExceeded;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        boolean isLimitExceeded() {
+            return limitExceeded;
+        }
+
+        private void count(long n) throws BodyTooLargeException {
+            count += n;
+            if (count > limit) {
+                limitExceeded = true;
+                throw new BodyTooLargeException("The document is bigger than " + limit + " bytes");
+            }
+        }
+    }
+
+    private static class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BodyTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    private interface JsonFields {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonFields fields) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(body, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            fields.write(generator);
+            generator.writeEndObject();
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.size());
+        body.writeTo(exchange.getResponseBody());
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, generator -> generator.writeStringField("error", message));
+    }
+
+    private static Map<String, String> getQueryParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                        URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * This function starts a server
+     * @param args the port, the schema directory, optionally the number of concurrent requests, which is the
+     *             number of processors by default, and optionally the maximum body size in megabytes
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: PdfParseServer <port> <schema directory> [max concurrent requests]"
+                    + " [max body size in MB]");
+            System.exit(1);
+        }
+        int maxConcurrentRequests = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        PdfParseServer server = new PdfParseServer(Integer.parseInt(args[0]), Paths.get(args[1]),
+                maxConcurrentRequests);
+        if (args.length > 3) {
+            server.setMaxBodySize(Long.parseLong(args[3]) * 1024 * 1024);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+    }
+}
@@ -1,17 +1,30 @@
 package com.fs.tabulaplus;
 
+import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.exceptions.CryptographyException;
+import org.apache.pdfbox.io.RandomAccessFile;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import technology.tabula.ObjectExtractor;
 import technology.tabula.Page;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 /**
@@ -52,6 +65,54 @@ public class PdfParser {
      */
     private PdfSection rootPdfSection;
 
+    /**
+     * True if the scan over a document should stop as soon as all sections have been located
+     */
+    private boolean shortCircuit;
+
+    /**
+     * True if the sections are listed in the order in which they appear in the documents
+     */
+    private boolean ordered;
+
+    /**
+     * The maximum number of extracted pages that are kept in memory while a document is being parsed
+     */
+    private int pageCacheSize = PageCache.DEFAULT_CAPACITY;
+
+    /**
+     * The executor that builds the tables of the sections of a document in parallel.
+     * It is null when the tables are built one after another.
+     */
+    private ExecutorService executorService;
+
+    /**
+     * The directory of the scratch files used when documents are loaded from a path. When it is null, PDFBox keeps
+     * the decoded objects of a document on the heap.
+     */
+    private File scratchDirectory;
+
+    /**
+     * The listener that receives the timings and counts of the parsing stages
+     */
+    private ParserMetricsListener metricsListener = ParserMetricsListener.NO_OP;
+
+    /**
+     * The store of the text indexes of PDF files. When it is null, the sections are located by stripping the text
+     * of every document.
+     */
+    private TextIndexStore textIndexStore;
+
+    /**
+     * True if the tables are kept by column in ColumnarNormalizedTable
+     */
+    private boolean columnarTables;
+
+    /**
+     * The cache of the results of parsed files. When it is null, every file is parsed.
+     */
+    private ParseResultCache resultCache;
+
     /**
      * Constructor
      * @throws IOException
@@ -68,6 +129,111 @@ public class PdfParser {
         this.parsedWithSchema = true;
     }
 
+    /**
+     * Constructor for a schema that has already been read, for example from a PdfSchemaRegistry.
+     * The sections of the schema are only read by the parser, so they can be shared by many parsers.
+     * @param rootPdfSection
+     */
+    public PdfParser(PdfSection rootPdfSection)
+    {
+        this.rootPdfSection = rootPdfSection;
+        this.parsedWithSchema = true;
+    }
+
+    /**
+     * Let the scan over a document stop as soon as the identifiers of all sections have been found, instead of
+     * going on to the last page of the document. The result is the same as the one of a full scan.
+     * @param shortCircuit
+     */
+    public void setShortCircuit(boolean shortCircuit) {
+        this.shortCircuit = shortCircuit;
+    }
+
+    /**
+     * Tell the parser that the sections are listed in the order in which they appear in the documents. Every
+     * section is then searched from the place where the previous section ends, and only sections that are not
+     * found there are searched in the whole document. A schema can turn this on with "ordered: true".
+     * @param ordered
+     */
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Set the maximum number of extracted pages that are kept in memory while a document is being parsed
+     * @param pageCacheSize
+     */
+    public void setPageCacheSize(int pageCacheSize) {
+        this.pageCacheSize = pageCacheSize;
+    }
+
+    /**
+     * Build the tables of all sections of a document in parallel on the common fork-join pool.
+     * The sections are still located one after another, only the table extraction runs in parallel.
+     * @param parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.executorService = parallel ? ForkJoinPool.commonPool() : null;
+    }
+
+    /**
+     * Build the tables of all sections of a document in parallel on the given executor.
+     * Passing null makes the tables be built one after another again.
+     * @param executorService
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Let documents that are loaded from a path keep their decoded objects in a scratch file in the given directory
+     * instead of on the heap. This is meant for very large documents.
+     * @param scratchDirectory
+     */
+    public void setScratchDirectory(File scratchDirectory) {
+        this.scratchDirectory = scratchDirectory;
+    }
+
+    /**
+     * Set the listener that receives the timings and counts of the parsing stages, for example an
+     * InMemoryMetricsListener. Passing null removes the listener.
+     * @param metricsListener
+     */
+    public void setMetricsListener(ParserMetricsListener metricsListener) {
+        this.metricsListener = metricsListener != null ? metricsListener : ParserMetricsListener.NO_OP;
+    }
+
+    /**
+     * Let the sections of PDF files be located from text indexes kept in the given store. The index of a file is
+     * built the first time the file is parsed, and every later parse of the same file, even with other sections,
+     * replays the index instead of stripping the text of the document again. Only documents that are parsed from
+     * a file or a path use the store. Passing null turns the indexes off.
+     * @param textIndexStore
+     */
+    public void setTextIndexStore(TextIndexStore textIndexStore) {
+        this.textIndexStore = textIndexStore;
+    }
+
+    /**
+     * Let the tables be kept by column in a ColumnarNormalizedTable instead of as a list of rows of strings. The
+     * rows can be read the same way, but they take much less memory, which matters for sections with many cells.
+     * @param columnarTables
+     */
+    public void setColumnarTables(boolean columnarTables) {
+        this.columnarTables = columnarTables;
+    }
+
+    /**
+     * Let the results of parsing files and streams be kept in the given cache, so that a file with the same content
+     * that is parsed again with the same sections gets the result from the cache without being loaded. The content
+     * of every file is hashed before it is parsed. Only the parse functions that return a map of tables use the
+     * cache. Passing null turns the cache off.
+     * @param resultCache
+     */
+    public void setResultCache(ParseResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     /**
      * Main parsing function to parse pdf files
      * @param pdfFile
@@ -82,102 +248,823 @@ public class PdfParser {
     }
 
     public Map<String, NormalizedTable> parse(File pdfFile) throws IOException, CryptographyException {
-        return parse(new FileInputStream(pdfFile));
+        return parseResult(pdfFile).getChildTables();
+    }
+
+    /**
+     * Parse a pdf file like parse(File), but return the result of the whole document, which also tells whether an
+     * error has left tables of the document empty or incomplete
+     * @param pdfFile
+     * @return the result of the root section, with the results of the top-level sections
+     * @throws IOException
+     * @throws CryptographyException
+     */
+    PdfSectionResult parseResult(File pdfFile) throws IOException, CryptographyException {
+        if (this.resultCache == null) {
+            return parse(new FileInputStream(pdfFile), pdfFile.toPath(), null, false);
+        }
+        // the hash is also the key of the text index of the file, so the file is only hashed once
+        String contentHash = TextIndexStore.hash(pdfFile.toPath());
+        return parseCached(contentHash,
+                () -> parse(new FileInputStream(pdfFile), pdfFile.toPath(), contentHash, false));
     }
 
     public Map<String, NormalizedTable> parse(InputStream pdfFile) throws IOException, CryptographyException {
-        PDDocument document = PDDocument.load(pdfFile);
+        if (this.resultCache == null) {
+            return parse(pdfFile, null, null, false).getChildTables();
+        }
+        // the stream can only be read once, so it is kept in memory to be hashed and then parsed
+        byte[] content;
         try {
-            return parse(document);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = pdfFile.read(buffer)) >= 0) {
+                out.write(buffer, 0, length);
+            }
+            content = out.toByteArray();
         } finally {
-            logger.info("Close the PDF file");
             pdfFile.close();
         }
+        return parseCached(TextIndexStore.toHex(TextIndexStore.newDigest().digest(content)),
+                () -> parse(new ByteArrayInputStream(content), null, null, false)).getChildTables();
+    }
+
+    /**
+     * Parse a pdf file that is read through a random access file instead of an input stream, so the file is not
+     * copied through heap buffers while it is loaded. If a scratch directory is set, the decoded objects of the
+     * document are kept in a scratch file too.
+     * @param pdfFile
+     * @return
+     * @throws IOException
+     * @throws CryptographyException
+     */
+    public Map<String, NormalizedTable> parse(Path pdfFile) throws IOException, CryptographyException {
+        if (this.resultCache == null) {
+            return parse(pdfFile, null, false).getChildTables();
+        }
+        String contentHash = TextIndexStore.hash(pdfFile);
+        return parseCached(contentHash, () -> parse(pdfFile, contentHash, false)).getChildTables();
     }
 
     public Map<String, NormalizedTable> parse(PDDocument document) throws IOException, CryptographyException {
-        if (document.isEncrypted()) {
-            document.decrypt("");
+        return parseResult(document).getChildTables();
+    }
+
+    /**
+     * Parse a document like parse(PDDocument), but return the result of the whole document, which also tells
+     * whether an error has left tables of the document empty or incomplete
+     * @param document
+     * @return the result of the root section, with the results of the top-level sections
+     * @throws IOException
+     * @throws CryptographyException
+     */
+    PdfSectionResult parseResult(PDDocument document) throws IOException, CryptographyException {
+        return parse(document, null, null, false, null);
+    }
+
+    /**
+     * Get the result of a file from the result cache, or parse the file and put its result in the cache. A result
+     * that an error has left incomplete is not put in the cache, so that the file is parsed again the next time.
+     * @param contentHash the hash of the content of the file
+     * @param tableParser the parsing of the file
+     * @return the result of the root section, with the results of the top-level sections
+     * @throws IOException
+     * @throws CryptographyException
+     */
+    private PdfSectionResult parseCached(String contentHash, TableParser tableParser)
+            throws IOException, CryptographyException {
+        List<PdfSection> sections = this.parsedWithSchema ? Collections.singletonList(this.rootPdfSection) :
+                Arrays.asList(this.pdfSections);
+        String key = ParseResultCache.getKey(contentHash, sections, this.ordered);
+        Map<String, NormalizedTable> tables = this.resultCache.get(key, this.columnarTables);
+        if (tables != null) {
+            logger.info("Got the result of the PDF file " + contentHash + " from the result cache");
+            PdfSection rootSection = this.parsedWithSchema ? this.rootPdfSection : new PdfSection("root");
+            List<PdfSection> topSections = this.parsedWithSchema ? this.rootPdfSection.getChildSections() :
+                    Arrays.asList(this.pdfSections);
+            List<PdfSectionResult> results = new ArrayList<>();
+            for (PdfSection section : topSections) {
+                results.add(new PdfSectionResult(section, tables.get(section.getNameWithoutSpaces()), null));
+            }
+            return new PdfSectionResult(rootSection, new NormalizedTable(), results);
         }
-        ObjectExtractor oe = new ObjectExtractor(document);
-        if (this.parsedWithSchema)
-        {
-            Map<String, NormalizedTable> resultMap = extractDataForSectionAndSubSections(document, oe,
-                    this.rootPdfSection);
+        PdfSectionResult result = tableParser.parse();
+        if (result.hasFailed()) {
+            logger.warn("The result of the PDF file " + contentHash + " is not cached because a section failed");
+        } else {
+            this.resultCache.put(key, result.getChildTables());
+        }
+        return result;
+    }
+
+    private interface TableParser {
+        PdfSectionResult parse() throws IOException, CryptographyException;
+    }
+
+    /**
+     * Parse a pdf file into a tree of results that follows the tree of sections of the schema. Every sub-section
+     * is only searched for inside the page areas of its parent section, at any depth. A section without
+     * identifiers only groups its sub-sections, which are then searched for where the section itself would be.
+     * @param pdfFile
+     * @return the result of the root section
+     * @throws IOException
+     * @throws CryptographyException
+     */
+    public PdfSectionResult parseTree(String pdfFile) throws IOException, CryptographyException {
+        return parseTree(new File(pdfFile));
+    }
+
+    public PdfSectionResult parseTree(File pdfFile) throws IOException, CryptographyException {
+        return parse(new FileInputStream(pdfFile), pdfFile.toPath(), null, true);
+    }
+
+    public PdfSectionResult parseTree(Path pdfFile) throws IOException, CryptographyException {
+        return parse(pdfFile, null, true);
+    }
+
+    public PdfSectionResult parseTree(PDDocument document) throws IOException, CryptographyException {
+        return parse(document, null, null, true, null);
+    }
+
+    /**
+     * Parse a pdf file read from an input stream
+     * @param pdfFile
+     * @param path the path of the file, which is only used for its text index, or null
+     * @param contentHash the hash of the content of the file if it is already known, or null
+     * @param nested true if the sub-sections of the sections are extracted too
+     * @return
+     * @throws IOException
+     * @throws CryptographyException
+     */
+    private PdfSectionResult parse(InputStream pdfFile, Path path, String contentHash, boolean nested)
+            throws IOException, CryptographyException {
+        long start = System.nanoTime();
+        ThreadAllocation allocation = ThreadAllocation.start();
+        try {
+            PDDocument document = load(pdfFile);
+            return parse(document, path, contentHash, nested, allocation);
+        } finally {
+            long allocatedBytes = allocation.getAllocatedBytes();
+            logger.info("Close the PDF file, allocated: " + allocatedBytes + " bytes");
+            pdfFile.close();
+            this.metricsListener.documentClosed(System.nanoTime() - start, allocatedBytes);
+        }
+    }
+
+    private PdfSectionResult parse(Path pdfFile, String contentHash, boolean nested)
+            throws IOException, CryptographyException {
+        long start = System.nanoTime();
+        ThreadAllocation allocation = ThreadAllocation.start();
+        File scratchFile = null;
+        RandomAccessFile scratch = null;
+        try {
+            if (this.scratchDirectory != null) {
+                scratchFile = File.createTempFile("tabulaplus", ".scratch", this.scratchDirectory);
+                scratch = new RandomAccessFile(scratchFile, "rw");
+            }
+            PDDocument document = PDDocument.loadNonSeq(pdfFile.toFile(), scratch, "");
+            this.metricsListener.documentLoaded(System.nanoTime() - start, pdfFile.toFile().length());
+            if (document.isEncrypted()) {
+                // the non-sequential parser decrypts objects itself while it reads them. the encryption dictionary
+                // is dropped so that the document is not decrypted a second time. this alters the document in
+                // memory only: the file is never written, but the loaded document is no longer marked as encrypted.
+                document.getDocument().getTrailer().removeItem(COSName.ENCRYPT);
+            }
+            return parse(document, pdfFile, contentHash, nested, allocation);
+        } finally {
+            long allocatedBytes = allocation.getAllocatedBytes();
+            logger.info("Close the PDF file " + pdfFile + ", allocated: " + allocatedBytes + " bytes");
+            if (scratch != null) {
+                scratch.close();
+            }
+            if (scratchFile != null && !scratchFile.delete()) {
+                scratchFile.deleteOnExit();
+            }
+            this.metricsListener.documentClosed(System.nanoTime() - start, allocatedBytes);
+        }
+    }
+
+    /**
+     * Parse a pdf document
+     * @param document
+     * @param pdfFile the file of the document, which is only used for its text index, or null
+     * @param contentHash the hash of the content of the file if it is already known, or null
+     * @param nested true if the sub-sections of the sections are extracted too
+     * @param allocation the measuring of the bytes allocated for the document, or null if they are not measured
+     * @return the result of the root section
+     * @throws IOException
+     * @throws CryptographyException
+     */
+    private PdfSectionResult parse(PDDocument document, Path pdfFile, String contentHash, boolean nested,
+                                   ThreadAllocation allocation) throws IOException, CryptographyException {
+        try {
+            DocumentParse documentParse = new DocumentParse(document, pdfFile, contentHash, allocation);
+            List<PdfSectionResult> results = extractResults(documentParse, documentParse.sectionLocator, null,
+                    documentParse.sections, nested);
+            documentParse.finish();
+            return new PdfSectionResult(documentParse.rootSection, new NormalizedTable(), results,
+                    documentParse.failed);
+        } finally {
+            // the document is closed even when parsing fails, so that a broken document doesn't leak resources
             document.close();
-            oe.close();
-            return resultMap;
         }
-        else
-        {
-            Map<String, NormalizedTable> resultMap = new LinkedHashMap<>();
-            for (PdfSection section : this.pdfSections) {
-                NormalizedTable resultTable = extractDataForOneSection(document, oe, section);
-                resultMap.put(section.getNameWithoutSpaces(), resultTable);
+    }
+
+    /**
+     * Parse a pdf file and stream the rows of every section to the row handler, page area by page area, instead of
+     * collecting them into normalized tables. The sections are handled one after another, even in parallel mode.
+     * Only the top-level sections are streamed: their sub-sections are not extracted, and a section without
+     * identifiers, which only groups its sub-sections, is handled as a section that does not exist. Use parseTree
+     * to get the results of the sub-sections.
+     * @param pdfFile
+     * @param rowHandler
+     * @throws IOException
+     * @throws CryptographyException
+     */
+    public void parse(File pdfFile, SectionRowHandler rowHandler) throws IOException, CryptographyException {
+        parse(new FileInputStream(pdfFile), rowHandler, pdfFile.toPath());
+    }
+
+    public void parse(InputStream pdfFile, SectionRowHandler rowHandler) throws IOException, CryptographyException {
+        parse(pdfFile, rowHandler, null);
+    }
+
+    private void parse(InputStream pdfFile, SectionRowHandler rowHandler, Path path)
+            throws IOException, CryptographyException {
+        long start = System.nanoTime();
+        ThreadAllocation allocation = ThreadAllocation.start();
+        try {
+            PDDocument document = load(pdfFile);
+            parse(document, rowHandler, path);
+        } finally {
+            long allocatedBytes = allocation.getAllocatedBytes();
+            logger.info("Close the PDF file, allocated: " + allocatedBytes + " bytes");
+            pdfFile.close();
+            this.metricsListener.documentClosed(System.nanoTime() - start, allocatedBytes);
+        }
+    }
+
+    public void parse(PDDocument document, SectionRowHandler rowHandler) throws IOException, CryptographyException {
+        parse(document, rowHandler, null);
+    }
+
+    private void parse(PDDocument document, SectionRowHandler rowHandler, Path pdfFile)
+            throws IOException, CryptographyException {
+        try {
+            DocumentParse documentParse = new DocumentParse(document, pdfFile, null, null);
+            for (PdfSection section : documentParse.sections)
+            {
+                long sectionStart = System.nanoTime();
+                int[] rowCount = new int[1];
+                rowHandler.startSection(section);
+                Iterable<Page> pages = withRulings(documentParse, section,
+                        getLazyPageAreas(documentParse.sectionLocator, section));
+                if (pages != null && pages.iterator().hasNext())
+                {
+                    NormalizedTable.extractRows(pages, section.getAlgorithm(), row -> {
+                        rowCount[0]++;
+                        rowHandler.handleRow(section, row);
+                    });
+                }
+                else
+                {
+                    logger.info(section.getName() + " does not exist!");
+                }
+                rowHandler.endSection(section);
+                this.metricsListener.sectionExtracted(section, System.nanoTime() - sectionStart,
+                        getNumOfPageAreas(documentParse.sectionLocator, section), rowCount[0]);
             }
+            documentParse.finish();
+        } finally {
             document.close();
-            oe.close();
-            return resultMap;
         }
     }
 
     /**
-     * Extract data for a section
-     * @param document
-     * @param oe
-     * @param section
+     * The setup that parsing a document into tables and streaming its rows share: the document is decrypted, its
+     * pages are extracted through a page cache, and the top-level sections are located with one scan over the
+     * document. The pages are extracted with their text only, by a text stripper. The sections that use the
+     * spreadsheet or the auto algorithm get their page areas cropped again from the pages extracted with their ruling
+     * lines by tabula, which are only extracted when the first of these sections is reached.
+     */
+    private class DocumentParse {
+        private final long start = System.nanoTime();
+        private final PDDocument document;
+        private final PageCache pageCache;
+        private final PdfSection rootSection;
+        private final List<PdfSection> sections;
+        private final DocumentTextIndex textIndex;
+        private final PdfMultiSectionLocator sectionLocator;
+        private final ThreadAllocation allocation;
+
+        /**
+         * True if an error has left a table empty or incomplete
+         */
+        private volatile boolean failed;
+
+        /**
+         * The lock of the spatial indexes of the pages, which the page areas of all sections of a page share
+         */
+        private final Object spatialIndexLock = new Object();
+
+        /**
+         * The pages with ruling lines and their extractor, or null until a section needs them
+         */
+        private ObjectExtractor oe;
+        private PageCache rulingPageCache;
+
+        /**
+         * Constructor
+         * @param document
+         * @param pdfFile the file of the document, which is only used for its text index, or null
+         * @param contentHash the hash of the content of the file if it is already known, or null
+         * @param allocation the measuring of the bytes allocated for the document, or null if they are not measured
+         * @throws IOException
+         * @throws CryptographyException
+         */
+        DocumentParse(PDDocument document, Path pdfFile, String contentHash, ThreadAllocation allocation)
+                throws IOException, CryptographyException {
+            if (document.isEncrypted()) {
+                document.decrypt("");
+            }
+            this.document = document;
+            this.allocation = allocation;
+            this.pageCache = new PageCache(new TextPageExtractor(document), pageCacheSize);
+            this.rootSection = parsedWithSchema ? rootPdfSection : new PdfSection("root");
+            this.sections = parsedWithSchema ? rootPdfSection.getChildSections() : Arrays.asList(pdfSections);
+            this.textIndex = getTextIndex(document, pdfFile, contentHash);
+            this.sectionLocator = locateSections(this,
+                    new PdfMultiSectionLocator(pageCache, filterSectionsWithIdentifiers(sections)),
+                    isOrdered(rootSection), document.getNumberOfPages());
+        }
+
+        /**
+         * This function logs an error that leaves a table empty or incomplete
+         * @param e
+         */
+        void fail(Throwable e) {
+            logger.error("Exception: ", e);
+            this.failed = true;
+        }
+
+        /**
+         * This function runs a part of the parsing on a thread of the executor, and counts the bytes it allocates
+         * with the bytes allocated for the document if they are measured
+         * @param task
+         * @return the result of the task
+         * @throws Exception
+         */
+        <T> T count(Callable<T> task) throws Exception {
+            return allocation != null ? allocation.count(task) : task.call();
+        }
+
+        /**
+         * This function crops a page area again from its page with ruling lines
+         * @param pageArea a page area of a page that only has text
+         * @return
+         */
+        Page withRulings(Page pageArea) {
+            return getRulingPageCache().getPage(pageArea.getPageNumber()).getArea(pageArea);
+        }
+
+        private synchronized PageCache getRulingPageCache() {
+            if (rulingPageCache == null) {
+                try {
+                    oe = new ObjectExtractor(document);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rulingPageCache = new PageCache(oe, pageCacheSize);
+            }
+            return rulingPageCache;
+        }
+
+        /**
+         * This function reports the pages that have been extracted to the metrics listener and closes the extractor
+         * @throws IOException
+         */
+        synchronized void finish() throws IOException {
+            long missCount = pageCache.getMissCount();
+            long extractNanos = pageCache.getExtractNanos();
+            if (rulingPageCache != null) {
+                logger.info("Page cache of the PDF document: " + pageCache + ", with ruling lines: "
+                        + rulingPageCache);
+                missCount += rulingPageCache.getMissCount();
+                extractNanos += rulingPageCache.getExtractNanos();
+                oe.close();
+            } else {
+                logger.info("Page cache of the PDF document: " + pageCache);
+            }
+            metricsListener.documentParsed(System.nanoTime() - start, missCount, extractNanos);
+        }
+    }
+
+    /**
+     * Load a PDF document from an input stream and report the time and the number of bytes read to the metrics
+     * listener
+     * @param pdfFile
      * @return
+     * @throws IOException
+     */
+    private PDDocument load(InputStream pdfFile) throws IOException {
+        long start = System.nanoTime();
+        CountingInputStream countingStream = new CountingInputStream(pdfFile);
+        PDDocument document = PDDocument.load(countingStream);
+        this.metricsListener.documentLoaded(System.nanoTime() - start, countingStream.getCount());
+        return document;
+    }
+
+    /**
+     * Get the text index of a document that has been loaded from a file, if there is a text index store
+     * @param document
+     * @param pdfFile the file of the document, or null
+     * @param contentHash the hash of the content of the file if it is already known, or null
+     * @return the text index, or null if the sections have to be located by stripping the text of the document
      */
-    private NormalizedTable extractDataForOneSection(PDDocument document, ObjectExtractor oe, PdfSection section) {
-        String[] tops = section.getTopIdentifiers();
-        String left = section.getLeftIdentifier();
-        String[] bottoms = section.getBottomIdentifiers();
-        String right = section.getRightIdentifier();
-        if (tops != null || left != null || bottoms != null || right != null) {
-            // get page areas that the current section is on
-            PdfSectionLocator sectionLocator = new PdfSectionLocator(oe, section);
-            List<Page> pages = null;
+    private DocumentTextIndex getTextIndex(PDDocument document, Path pdfFile, String contentHash) {
+        if (this.textIndexStore != null && pdfFile != null) {
             try {
-                pages = sectionLocator.locateSection(document, oe.extract(1));
+                return contentHash != null ? this.textIndexStore.getOrBuild(pdfFile, contentHash, document)
+                        : this.textIndexStore.getOrBuild(pdfFile, document);
             } catch (IOException e) {
                 logger.error("Exception: ", e);
-            } catch (Exception e) { // catch all other exceptions
-                logger.error("Exception: ", e);
             }
+        }
+        return null;
+    }
 
-            if (pages != null && !pages.isEmpty())
-            {
-                // create a normalized table with the data extracted from pages
-                NormalizedTable normalizedTable = new NormalizedTable(pages, NormalizedTable.TEXT_ALGORITHM);
-                normalizedTable.setTableName(section.getName());
-                return normalizedTable;
+    /**
+     * @param parentSection
+     * @return true if the child sections of the parent section are in document order
+     */
+    private boolean isOrdered(PdfSection parentSection) {
+        return this.ordered || parentSection.isOrdered();
+    }
+
+    private List<PdfSection> filterSectionsWithIdentifiers(List<PdfSection> sections) {
+        List<PdfSection> sectionsWithIdentifiers = new ArrayList<>();
+        for (PdfSection section : sections) {
+            if (hasIdentifiers(section)) {
+                sectionsWithIdentifiers.add(section);
             }
-            else
-            {
-                logger.info(section.getName() + " does not exist!");
-                return new NormalizedTable();
+        }
+        return sectionsWithIdentifiers;
+    }
+
+    /**
+     * Locate all sections of a locator in a single scan over the document, or in a replay of the text index of
+     * the document if there is one
+     * @param documentParse the document and its text index
+     * @param sectionLocator
+     * @param ordered true if the sections are in document order
+     * @param pageCount the number of pages of the document for the top-level sections, or 0 for sub-sections, so
+     *                  that the pages of a document are counted once by the metrics listener
+     * @return the locator, or null if the sections could not be located
+     */
+    private PdfMultiSectionLocator locateSections(DocumentParse documentParse, PdfMultiSectionLocator sectionLocator,
+                                                  boolean ordered, int pageCount) {
+        sectionLocator.setShortCircuit(this.shortCircuit);
+        sectionLocator.setOrdered(ordered);
+        try {
+            long start = System.nanoTime();
+            if (documentParse.textIndex != null) {
+                sectionLocator.locateSections(documentParse.textIndex, 1);
+            } else {
+                sectionLocator.locateSections(documentParse.document, 1);
+            }
+            this.metricsListener.sectionsLocated(System.nanoTime() - start, sectionLocator.getNumOfScannedPages(),
+                    pageCount);
+            return sectionLocator;
+        } catch (IOException e) {
+            documentParse.fail(e);
+        } catch (Exception e) { // catch all other exceptions
+            documentParse.fail(e);
+        }
+        return null;
+    }
+
+    /**
+     * Extract the tables of a list of sections and, if nested is true, the results of their sub-sections. The
+     * sub-sections of a section are located inside the page areas of the section, and so on to any depth.
+     * @param documentParse the document and its pages
+     * @param sectionLocator the locator of the sections, or null if they can't be located
+     * @param parentPageAreas the page areas the sections have been searched in, or null for the whole document
+     * @param sections
+     * @param nested
+     * @return the results of the sections, in the same order as the sections
+     * @throws IOException
+     */
+    private List<PdfSectionResult> extractResults(DocumentParse documentParse, PdfMultiSectionLocator sectionLocator,
+                                                  List<Page> parentPageAreas, List<PdfSection> sections,
+                                                  boolean nested) throws IOException {
+        Map<String, NormalizedTable> tables = extractDataForSections(documentParse, sectionLocator, sections);
+
+        List<PdfSectionResult> results = new ArrayList<>();
+        for (PdfSection section : sections) {
+            List<PdfSectionResult> childResults = null;
+            List<PdfSection> childSections = section.getChildSections();
+            if (nested && childSections != null && !childSections.isEmpty()) {
+                // a section without identifiers only groups its sub-sections, which are searched for where the
+                // section itself has been searched for
+                List<Page> pageAreas = parentPageAreas;
+                boolean located = sectionLocator != null;
+                if (hasIdentifiers(section)) {
+                    pageAreas = getPageAreas(documentParse, sectionLocator, section);
+                    located = pageAreas != null && !pageAreas.isEmpty();
+                }
+                PdfMultiSectionLocator childLocator = null;
+                if (located) {
+                    List<PdfSection> childSectionsWithIdentifiers = filterSectionsWithIdentifiers(childSections);
+                    PageCache pageCache = documentParse.pageCache;
+                    childLocator = locateSections(documentParse, pageAreas == null ?
+                                    new PdfMultiSectionLocator(pageCache, childSectionsWithIdentifiers) :
+                                    new PdfMultiSectionLocator(pageCache, pageAreas, childSectionsWithIdentifiers),
+                            isOrdered(section), 0);
+                }
+                childResults = extractResults(documentParse, childLocator, pageAreas, childSections, true);
+            }
+            results.add(new PdfSectionResult(section, tables.get(section.getNameWithoutSpaces()), childResults));
+        }
+        return results;
+    }
+
+    private boolean hasIdentifiers(PdfSection section) {
+        return section.getTopIdentifiers() != null || section.getLeftIdentifier() != null
+                || section.getBottomIdentifiers() != null || section.getRightIdentifier() != null;
+    }
+
+    /**
+     * Extract data for a section. The page areas of the section are extracted lazily, one after another, while the
+     * table is being built.
+     * @param documentParse
+     * @param sectionLocator
+     * @param section
+     * @return
+     */
+    private NormalizedTable extractDataForOneSection(DocumentParse documentParse,
+                                                     PdfMultiSectionLocator sectionLocator, PdfSection section) {
+        return createNormalizedTable(documentParse, section,
+                withRulings(documentParse, section, getLazyPageAreas(sectionLocator, section)),
+                getNumOfPageAreas(sectionLocator, section));
+    }
+
+    /**
+     * Get the page areas of a section with the ruling lines of their pages if the algorithm of the section needs
+     * them. The page areas are cropped again from the pages with ruling lines when they are reached.
+     * @param documentParse
+     * @param section
+     * @param pageAreas the page areas, or null if the section can't be located
+     * @return
+     */
+    private Iterable<Page> withRulings(DocumentParse documentParse, PdfSection section, Iterable<Page> pageAreas) {
+        if (pageAreas == null || section.getAlgorithm() == NormalizedTable.TEXT_ALGORITHM) {
+            return pageAreas;
+        }
+        return () -> {
+            Iterator<Page> iterator = pageAreas.iterator();
+            return new Iterator<Page>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Page next() {
+                    return documentParse.withRulings(iterator.next());
+                }
+            };
+        };
+    }
+
+    /**
+     * Get the page areas of a section with the ruling lines of their pages if the algorithm of the section needs
+     * them, cropping all of them at once
+     * @param documentParse
+     * @param section
+     * @param pageAreas the page areas, or null if the section can't be located
+     * @return
+     */
+    private List<Page> withRulings(DocumentParse documentParse, PdfSection section, List<Page> pageAreas) {
+        if (pageAreas == null || section.getAlgorithm() == NormalizedTable.TEXT_ALGORITHM) {
+            return pageAreas;
+        }
+        List<Page> pageAreasWithRulings = new ArrayList<>(pageAreas.size());
+        for (Page pageArea : pageAreas) {
+            pageAreasWithRulings.add(documentParse.withRulings(pageArea));
+        }
+        return pageAreasWithRulings;
+    }
+
+    /**
+     * Get page areas that a section is on
+     * @param documentParse
+     * @param sectionLocator
+     * @param section
+     * @return the page areas, or null if the section can't be located
+     */
+    private List<Page> getPageAreas(DocumentParse documentParse, PdfMultiSectionLocator sectionLocator,
+                                    PdfSection section) {
+        if (sectionLocator != null && hasIdentifiers(section)) {
+            try {
+                return sectionLocator.getPageAreas(section);
+            } catch (Exception e) { // catch all exceptions
+                documentParse.fail(e);
             }
         }
-        else
+        return null;
+    }
+
+    /**
+     * Get page areas that a section is on, extracting every page area only when it is reached
+     * @param sectionLocator
+     * @param section
+     * @return the page areas, or null if the section can't be located
+     */
+    private Iterable<Page> getLazyPageAreas(PdfMultiSectionLocator sectionLocator, PdfSection section) {
+        if (sectionLocator != null && hasIdentifiers(section)) {
+            return sectionLocator.getLazyPageAreas(section);
+        }
+        return null;
+    }
+
+    /**
+     * Get page areas that a section is on, with the ruling lines of their pages if the algorithm of the section needs
+     * them
+     * @param documentParse
+     * @param sectionLocator
+     * @param section
+     * @return the page areas, or null if the section can't be located
+     */
+    private List<Page> getPageAreasWithRulings(DocumentParse documentParse, PdfMultiSectionLocator sectionLocator,
+                                               PdfSection section) {
+        List<Page> pageAreas = getPageAreas(documentParse, sectionLocator, section);
+        try {
+            return withRulings(documentParse, section, pageAreas);
+        } catch (Exception e) { // catch all exceptions
+            documentParse.fail(e);
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of page areas of a section without extracting them
+     * @param sectionLocator
+     * @param section
+     * @return the number of page areas, 0 if the section can't be located
+     */
+    private int getNumOfPageAreas(PdfMultiSectionLocator sectionLocator, PdfSection section) {
+        if (sectionLocator != null && hasIdentifiers(section)) {
+            return sectionLocator.getNumOfPageAreas(section);
+        }
+        return 0;
+    }
+
+    /**
+     * Create a normalized table with the data extracted from the page areas of a section, and report the time it
+     * took to the metrics listener
+     * @param documentParse
+     * @param section
+     * @param pages
+     * @param numOfPageAreas
+     * @return
+     */
+    private NormalizedTable createNormalizedTable(DocumentParse documentParse, PdfSection section,
+                                                  Iterable<Page> pages, int numOfPageAreas) {
+        long start = System.nanoTime();
+        NormalizedTable normalizedTable = createNormalizedTable(documentParse, section, pages);
+        this.metricsListener.sectionExtracted(section, System.nanoTime() - start, numOfPageAreas,
+                normalizedTable.getRows().size());
+        return normalizedTable;
+    }
+
+    /**
+     * Create a normalized table with the data extracted from the page areas of a section
+     * @param documentParse
+     * @param section
+     * @param pages
+     * @return the table, which is empty if the section doesn't exist or its data can't be extracted
+     */
+    private NormalizedTable createNormalizedTable(DocumentParse documentParse, PdfSection section,
+                                                  Iterable<Page> pages) {
+        if (pages != null && pages.iterator().hasNext())
         {
-            logger.info(section.getName() + " does not exist!");
-            return new NormalizedTable();
+            try {
+                NormalizedTable normalizedTable = columnarTables
+                        ? new ColumnarNormalizedTable(pages, section.getAlgorithm())
+                        : new NormalizedTable(pages, section.getAlgorithm());
+                normalizedTable.setTableName(section.getName());
+                return normalizedTable;
+            } catch (Exception e) { // catch all exceptions
+                documentParse.fail(e);
+                return new NormalizedTable();
+            }
         }
+        logger.info(section.getName() + " does not exist!");
+        return new NormalizedTable();
     }
 
     /**
-     * Extract data for a section and all sub-sections
+     * Extract data for a list of sections. When an executor service is set, the page areas of the sections are
+     * collected one after another, because PDFBox and tabula's page extraction are not thread-safe, and then the
+     * tables are built in parallel. The text algorithm only reads the text elements of its own page areas, so the
+     * tables can be built concurrently. The spreadsheet and the auto algorithms look up the text of every cell in
+     * the spatial index of the whole page, which is shared by the page areas of all sections of the page, so the
+     * tables of a document that use them are built one at a time, and the page areas of the next sections, whose
+     * cropping also reads that spatial index, are collected while none of these tables is being built. The order of
+     * the sections is kept in the result in both cases.
+     * @param documentParse
+     * @param sectionLocator
+     * @param sections
+     * @return
+     * @throws IOException
      */
-    private Map<String, NormalizedTable> extractDataForSectionAndSubSections(PDDocument document, ObjectExtractor oe,
-                                                                             PdfSection section) {
+    private Map<String, NormalizedTable> extractDataForSections(DocumentParse documentParse,
+                                                                PdfMultiSectionLocator sectionLocator,
+                                                                List<PdfSection> sections) throws IOException {
         Map<String, NormalizedTable> mapResult = new LinkedHashMap<>();
 
-        for (PdfSection subSection : section.getChildSections())
+        if (this.executorService == null)
+        {
+            for (PdfSection section : sections)
+            {
+                NormalizedTable table = extractDataForOneSection(documentParse, sectionLocator, section);
+                mapResult.put(section.getNameWithoutSpaces(), table);
+            }
+            return mapResult;
+        }
+
+        Map<String, Future<NormalizedTable>> futureTables = new LinkedHashMap<>();
+        for (PdfSection section : sections)
         {
-            NormalizedTable table = extractDataForOneSection(document, oe, subSection);
-            mapResult.put(subSection.getNameWithoutSpaces(), table);
+            List<Page> pages;
+            synchronized (documentParse.spatialIndexLock) {
+                pages = getPageAreasWithRulings(documentParse, sectionLocator, section);
+            }
+            int numOfPageAreas = pages != null ? pages.size() : 0;
+            futureTables.put(section.getNameWithoutSpaces(),
+                    this.executorService.submit(() -> documentParse.count(() -> {
+                        if (section.getAlgorithm() == NormalizedTable.TEXT_ALGORITHM) {
+                            return createNormalizedTable(documentParse, section, pages, numOfPageAreas);
+                        }
+                        synchronized (documentParse.spatialIndexLock) {
+                            return createNormalizedTable(documentParse, section, pages, numOfPageAreas);
+                        }
+                    })));
         }
 
+        for (Map.Entry<String, Future<NormalizedTable>> futureTable : futureTables.entrySet())
+        {
+            try {
+                mapResult.put(futureTable.getKey(), futureTable.getValue().get());
+            } catch (ExecutionException e) {
+                documentParse.fail(e.getCause());
+                mapResult.put(futureTable.getKey(), new NormalizedTable());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while extracting data for sections");
+            }
+        }
         return mapResult;
     }
+
+    /**
+     * An input stream that counts the bytes read through it
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
 }
@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.NullNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
@@ -15,6 +17,8 @@ import java.util.*;
  * Created by hailegia on 27/10/16.
  */
 public class PdfSchemaReader {
+    private Logger logger = LoggerFactory.getLogger(PdfSchemaReader.class);
+
     private final ObjectMapper objectMapper;
 
     public PdfSchemaReader() {
@@ -40,6 +44,23 @@ public class PdfSchemaReader {
         return null;
     }
 
+    /**
+     * This function reads a schema from its content
+     * @param schemaContent
+     * @return the root section, or null if the content is not a valid schema
+     */
+    public PdfSection read(byte[] schemaContent) {
+        try {
+            JsonNode jsonRoot = objectMapper.readTree(schemaContent);
+            if (jsonRoot == null) {
+                return null;
+            }
+            return parse("root", jsonRoot);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     /**
      * This function converts a JsonNode node with name {sectionName} to a PdfSection node. If the JsonNode node
      * doesn't just contain regular fields, including top, bottom, left, right, then it means that the JsonNode
@@ -94,12 +115,64 @@ public class PdfSchemaReader {
             catch (NumberFormatException e) {}
         }
 
-        return new PdfSection(sectionName,
+        PdfSection section = new PdfSection(sectionName,
                 topText == null ? null : topText.split("\\|"), getPdfNodeIdentifier("left", jsonNode),
                 bottomText == null ? null : bottomText.split("\\|"), getPdfNodeIdentifier("right", jsonNode),
                 isIdentifierIncluded("top", jsonNode), isIdentifierIncluded("left", jsonNode),
                 isIdentifierIncluded("bottom", jsonNode), isIdentifierIncluded("right", jsonNode),
                 customTopMargin, customBottomMargin, tableType, children);
+
+        // process the page range hints
+        section.setStartPage(getPageNumber("start_page", jsonNode));
+        section.setMaxPage(getPageNumber("max_page", jsonNode));
+        section.setSearchLastNPages(getPageNumber("search_last_n_pages", jsonNode));
+
+        // the extraction algorithm of the table, for example "algorithm: spreadsheet" for a table with ruling lines
+        section.setAlgorithm(getAlgorithm(sectionName, getPdfNodeIdentifier("algorithm", jsonNode)));
+
+        // the child sections are in document order if the section says so, for example "ordered: true" at the
+        // top of a schema file
+        JsonNode ordered = jsonNode.get("ordered");
+        section.setOrdered(ordered != null && ordered.asBoolean());
+        return section;
+    }
+
+    /**
+     * This function maps the name of an extraction algorithm to the algorithm of NormalizedTable. An unknown name
+     * is logged as a warning, so that a misspelled algorithm doesn't go unnoticed.
+     * @param sectionName
+     * @param name text, spreadsheet or auto
+     * @return the algorithm, or the text algorithm if the name is missing or unknown
+     */
+    private int getAlgorithm(String sectionName, String name) {
+        if (name == null || "text".equalsIgnoreCase(name)) {
+            return NormalizedTable.TEXT_ALGORITHM;
+        }
+        if ("spreadsheet".equalsIgnoreCase(name)) {
+            return NormalizedTable.SPREADSHEET_ALGORITHM;
+        }
+        if ("auto".equalsIgnoreCase(name)) {
+            return NormalizedTable.AUTO_ALGORITHM;
+        }
+        logger.warn("Unknown algorithm \"" + name + "\" of the section " + sectionName
+                + ", the text algorithm is used instead. The algorithms are text, spreadsheet and auto.");
+        return NormalizedTable.TEXT_ALGORITHM;
+    }
+
+    /**
+     * This function retrieves a page number or a number of pages, such as start_page or max_page
+     * @param key
+     * @param node
+     * @return the value, or 0 if the key is missing or its value is not a positive integer
+     */
+    private int getPageNumber(String key, JsonNode node) {
+        String text = getPdfNodeIdentifier(key, node);
+        if (text != null) {
+            try {
+                return Math.max(Integer.parseInt(text), 0);
+            } catch (NumberFormatException e) {}
+        }
+        return 0;
     }
 
     /**
@@ -0,0 +1,217 @@
+package com.fs.tabulaplus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the sections of schema files that have been read, so that a schema file is only read and
+ * turned into a tree of PdfSection once, and parsers can be created for it without reading it again.
+ *
+ * When a schema is asked for, the registry compares the modification time and the size of the file with the ones
+ * it had when it was read. If they are the same, the cached sections are returned. If they have changed, the file
+ * is read and its SHA-256 hash is compared with the cached one, and the schema is only parsed again if the content
+ * has really changed. With verifyContent on, the hash is checked every time, which also catches a change that
+ * keeps the modification time and the size.
+ *
+ * The registry holds at most maxEntries schemas. When it is full, the schema that was used least recently is
+ * dropped. The cached sections are shared by all parsers and must not be changed.
+ */
+public class PdfSchemaRegistry {
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private Logger logger = LoggerFactory.getLogger(PdfSchemaRegistry.class);
+
+    private final PdfSchemaReader schemaReader = new PdfSchemaReader();
+
+    private final Map<Path, CachedSchema> entries;
+
+    private boolean verifyContent;
+
+    private long hitCount;
+    private long loadCount;
+
+    private static class CachedSchema
+    {
+        private final PdfSection rootSection;
+        private long lastModified;
+        private long size;
+        private final byte[] contentHash;
+
+        CachedSchema(PdfSection rootSection, long lastModified, long size, byte[] contentHash)
+        {
+            this.rootSection = rootSection;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.contentHash = contentHash;
+        }
+    }
+
+    public PdfSchemaRegistry()
+    {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public PdfSchemaRegistry(final int maxEntries)
+    {
+        if (maxEntries < 1)
+        {
+            throw new IllegalArgumentException("The size of a schema registry must be positive: " + maxEntries);
+        }
+        this.entries = new LinkedHashMap<Path, CachedSchema>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, CachedSchema> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Check the hash of the content of a schema file every time the schema is asked for, not only when the
+     * modification time or the size of the file has changed
+     * @param verifyContent
+     */
+    public synchronized void setVerifyContent(boolean verifyContent)
+    {
+        this.verifyContent = verifyContent;
+    }
+
+    public PdfSection get(String schemaFile)
+    {
+        return get(Paths.get(schemaFile));
+    }
+
+    /**
+     * This function returns the root section of a schema file, reading the file only if it is not cached or it
+     * has changed
+     * @param schemaFile
+     * @return the root section, or null if the file doesn't exist or is not a valid schema
+     */
+    public synchronized PdfSection get(Path schemaFile)
+    {
+        Path key = schemaFile.toAbsolutePath().normalize();
+        try {
+            long lastModified = Files.getLastModifiedTime(key).toMillis();
+            long size = Files.size(key);
+            CachedSchema entry = entries.get(key);
+            if (entry != null && !verifyContent && entry.lastModified == lastModified && entry.size == size)
+            {
+                hitCount++;
+                return entry.rootSection;
+            }
+
+            byte[] content = Files.readAllBytes(key);
+            byte[] contentHash = hash(content);
+            if (entry != null && Arrays.equals(entry.contentHash, contentHash))
+            {
+                // the file has been touched, but its content is the same
+                entry.lastModified = lastModified;
+                entry.size = size;
+                hitCount++;
+                return entry.rootSection;
+            }
+
+            loadCount++;
+            PdfSection rootSection = schemaReader.read(content);
+            if (rootSection == null)
+            {
+                logger.error("Invalid schema file: " + key);
+                entries.remove(key);
+                return null;
+            }
+            entries.put(key, new CachedSchema(rootSection, lastModified, size, contentHash));
+            return rootSection;
+        } catch (IOException e) {
+            logger.error("Can't read schema file: " + key, e);
+            entries.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * This function creates a parser for a schema file, reusing the cached sections of the schema
+     * @param schemaFile
+     * @return
+     */
+    public PdfParser newParser(String schemaFile)
+    {
+        return new PdfParser(get(schemaFile));
+    }
+
+    /**
+     * This function reads schema files ahead of time, for example when a service starts
+     * @param schemaFiles
+     * @return the number of schema files that could be read
+     */
+    public int preload(Iterable<Path> schemaFiles)
+    {
+        int numOfLoaded = 0;
+        for (Path schemaFile : schemaFiles)
+        {
+            if (get(schemaFile) != null)
+            {
+                numOfLoaded++;
+            }
+        }
+        return numOfLoaded;
+    }
+
+    public int preload(String... schemaFiles)
+    {
+        int numOfLoaded = 0;
+        for (String schemaFile : schemaFiles)
+        {
+            if (get(schemaFile) != null)
+            {
+                numOfLoaded++;
+            }
+        }
+        return numOfLoaded;
+    }
+
+    public synchronized void invalidate(Path schemaFile)
+    {
+        entries.remove(schemaFile.toAbsolutePath().normalize());
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount()
+    {
+        return hitCount;
+    }
+
+    public synchronized long getLoadCount()
+    {
+        return loadCount;
+    }
+
+    private static byte[] hash(byte[] content)
+    {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -48,6 +48,27 @@ public class PdfSection {
      */
     private Integer tableType;
 
+    /**
+     * The algorithm the table of the section is extracted with, one of the algorithms of NormalizedTable
+     */
+    private int algorithm = NormalizedTable.TEXT_ALGORITHM;
+
+    /**
+     * Page range hints that bound the pages searched for the section. All of them are optional and 0 means unset.
+     * startPage is the first page the section can start on and maxPage the last page the section can be on.
+     * searchLastNPages restricts the search to the last pages of the document, for sections such as a closing
+     * summary.
+     */
+    private int startPage;
+    private int maxPage;
+    private int searchLastNPages;
+
+    /**
+     * True if the child sections are listed in the order in which they appear in the document, so that each of
+     * them can be searched from the end of the previous one
+     */
+    private boolean ordered;
+
     /**
      * A section can have multiple child sections. For example, the root section (PDF File section) can have multiple
      * child sections.
@@ -178,6 +199,51 @@ public class PdfSection {
         return tableType;
     }
 
+    public int getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(int algorithm)
+    {
+        this.algorithm = algorithm;
+    }
+
+    public int getStartPage() {
+        return startPage;
+    }
+
+    public void setStartPage(int startPage)
+    {
+        this.startPage = startPage;
+    }
+
+    public int getMaxPage() {
+        return maxPage;
+    }
+
+    public void setMaxPage(int maxPage)
+    {
+        this.maxPage = maxPage;
+    }
+
+    public int getSearchLastNPages() {
+        return searchLastNPages;
+    }
+
+    public void setSearchLastNPages(int searchLastNPages)
+    {
+        this.searchLastNPages = searchLastNPages;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public void setOrdered(boolean ordered)
+    {
+        this.ordered = ordered;
+    }
+
     @Override
     public String toString() {
         StringBuilder childrenBuilder = new StringBuilder();
@@ -1,8 +1,6 @@
 package com.fs.tabulaplus;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.util.PDFTextStripper;
-import org.apache.pdfbox.util.TextPosition;
 import technology.tabula.ObjectExtractor;
 import technology.tabula.Page;
 import technology.tabula.Rectangle;
@@ -11,7 +9,9 @@ import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * This class will locate a section in a PDF file by finding all the page areas that contain parts of the section.
@@ -23,168 +23,71 @@ import java.util.List;
 public class PdfSectionLocator {
     private PdfSection pdfSection;
 
-    private final ObjectExtractor oe;
-
     /**
-     * These are 2D positions of the identifiers of the section
+     * Pages of the document are taken from this source, usually a page cache, so that a page is only extracted once
      */
-    private TextPosition leftPosition;
-    private TextPosition rightPosition;
-    private TextPosition topPosition;
-    private TextPosition bottomPosition;
+    private final PageSource pageSource;
 
     /**
-     * This stripper helps to find the page area that contains the top identifier of the section, the page area
-     * that contains the bottom identifier of the section and positions of top, bottom, left and right identifiers.
+     * The tracker keeps the positions of the identifiers of the section, the page that contains the start of the
+     * section and the number of page turns from the start of the section to its end.
      */
-    private TextStripper stripper;
+    private PdfSectionTracker tracker;
 
     /**
-     * This variable keeps track of the number of page turns needed to go from the start of the PDF section to
-     * the end of the PDF section. For example, if the start of a section is on page 1 and the end of the section is on
-     * page 2, then the numOfPageTurns = 1
+     * The value of this variable is the average of the top margins collected by the tracker
      */
-    private int numOfPageTurns;
+    private float marginTop;
 
     /**
-     * This variable maintains the top margins for different pages.
-     * The search process is that it starts from a start page, scan page after page until the end identifier
-     * of the PDF section is found. When multiple pages are scanned, the top margins of these pages are collected.
+     * True if the scan should stop as soon as the section is resolved
      */
-    private List<Float> topMargins = new ArrayList<>();
+    private boolean shortCircuit;
 
     /**
-     * The value of this variable is the average of top margins from above
+     * Constructor
+     * @param oe
+     * @param section
      */
-    private float marginTop;
-
-    private class TextStripper extends PDFTextStripper
+    public PdfSectionLocator(ObjectExtractor oe, PdfSection section)
     {
-        /**
-         * This variable keeps track of whether the scanner has just started on a new page
-         */
-        private boolean pageStarted;
-
-        /**
-         * This variable keeps the page number of the page that contains the start of the PDF section
-         */
-        private int actualStartPageNumber;
-
-        public TextStripper(int startPageNumber) throws IOException
-        {
-            super();
-            super.setSortByPosition(true);
-            super.setStartPage(startPageNumber);
-            this.actualStartPageNumber = startPageNumber;
-        }
-
-        /**
-         * Every time a new page is scanned, this function is called
-         */
-        @Override
-        protected void writePageStart() throws IOException
-        {
-            super.writePageStart();
-            pageStarted = true;
-        }
-
-        /**
-         * When the scanner reaches the end of a page, this function gets called
-         * @throws IOException
-         */
-        @Override
-        protected void writePageEnd() throws IOException
-        {
-            super.writePageEnd();
-            if (topPosition == null)
-            {
-                this.actualStartPageNumber++;
-            }
-            if ((pdfSection.getTopIdentifiers() == null || topPosition != null) && (bottomPosition == null))
-            {
-                numOfPageTurns++;
-            }
-        }
-
-        /**
-         * This function gets called whenever a string needs to be written to the output stream
-         * @param text
-         * @param textPositions
-         * @throws IOException
-         */
-        @Override
-        protected void writeString(String text, List<TextPosition> textPositions) throws IOException
-        {
-            if (pageStarted)
-            {
-                // a new page has just started, we need to collect the top margin of this page
-                pageStarted = false;
-                topMargins.add(textPositions.get(0).getY());
-            }
-
-            // determine the top boundary
-            if (pdfSection.getTopIdentifiers() != null && topPosition == null)
-            {
-                for (String topText : pdfSection.getTopIdentifiers())
-                {
-                    if (text.equals(topText) || text.startsWith(topText) || text.endsWith(topText))
-                    {
-                        topPosition = textPositions.get(0);
-                    }
-                }
-            }
-
-            // determine the left boundary
-            if (pdfSection.getLeftIdentifier() != null && leftPosition == null)
-            {
-                if (text.equals(pdfSection.getLeftIdentifier()) || text.startsWith(pdfSection.getLeftIdentifier())
-                        || text.endsWith(pdfSection.getLeftIdentifier()))
-                {
-                    leftPosition = pdfSection.isLeftIncluded() ? textPositions.get(0) :
-                            textPositions.get(textPositions.size() - 1);
-                }
-            }
-
-            // determine the bottom boundary
-            if ((pdfSection.getTopIdentifiers() == null || topPosition != null) && pdfSection.getBottomIdentifiers() != null
-                    && bottomPosition == null)
-            {
-                for (String bottomText : pdfSection.getBottomIdentifiers())
-                {
-                    if (text.equals(bottomText) || text.startsWith(bottomText) || text.endsWith(bottomText))
-                    {
-                        bottomPosition = textPositions.get(0);
-                        break;
-                    }
-                }
-            }
-
-            // determine the right boundary
-            if ((pdfSection.getLeftIdentifier() == null || leftPosition != null) && pdfSection.getRightIdentifier() != null
-                    && rightPosition == null) {
-                if (text.equals(pdfSection.getRightIdentifier()) || text.startsWith(pdfSection.getRightIdentifier())
-                        || text.endsWith(pdfSection.getRightIdentifier())) {
-                    rightPosition = pdfSection.isRightIncluded() ? textPositions.get(textPositions.size() - 1) :
-                            textPositions.get(0);
-                }
-            }
-
-            super.writeString(text, textPositions);
-        }
-
+        this(new PageCache(oe), section);
     }
 
     /**
      * Constructor
-     * @param oe
+     * @param pageCache
      * @param section
      */
-    public PdfSectionLocator(ObjectExtractor oe, PdfSection section)
+    public PdfSectionLocator(PageCache pageCache, PdfSection section)
     {
-        this.oe = oe;
+        this.pageSource = pageCache;
         this.pdfSection = section;
     }
 
+    /**
+     * Constructor for a section whose identifiers have already been located by a scan over the document
+     * @param pageSource
+     * @param tracker
+     */
+    PdfSectionLocator(PageSource pageSource, PdfSectionTracker tracker)
+    {
+        this.pageSource = pageSource;
+        this.pdfSection = tracker.getPdfSection();
+        this.tracker = tracker;
+    }
+
+    /**
+     * When short circuit is on, the scan stops as soon as the identifiers needed by the section have
+     * been found, instead of going on to the last page of the document. The page areas are the same as the ones
+     * found by a full scan.
+     * @param shortCircuit
+     */
+    public void setShortCircuit(boolean shortCircuit)
+    {
+        this.shortCircuit = shortCircuit;
+    }
+
     /**
      * This function tries to find pages that contain a PDF section
      * @param document
@@ -194,79 +97,178 @@ public class PdfSectionLocator {
      */
     public List<Page> locateSection(PDDocument document, Page startPage) throws IOException
     {
-        int startPageNumber = startPage.getPageNumber();
+        scan(document, startPage);
+        return getPageAreas();
+    }
 
-        stripper = new TextStripper(startPageNumber);
-        stripper.getText(document);
+    /**
+     * This function tries to find pages that contain a PDF section, like locateSection does, but the page areas
+     * are only extracted and cropped when the returned iterable reaches them. Page areas that have been handled
+     * can be released right away, which keeps the memory low for sections that run across many pages.
+     * @param document
+     * @param startPage
+     * @return
+     * @throws IOException
+     */
+    public Iterable<Page> locateSectionLazily(PDDocument document, Page startPage) throws IOException
+    {
+        scan(document, startPage);
+        return getLazyPageAreas();
+    }
 
-        // This is the page that contains the start of the PDF section
-        Page actualStartPage;
+    private void scan(PDDocument document, Page startPage) throws IOException
+    {
+        tracker = new PdfSectionTracker(pdfSection, startPage.getPageNumber(), pageSource.getPageCount());
 
-        if (stripper.actualStartPageNumber <= oe.getPageCount())
+        TextStripper stripper = new TextStripper(startPage.getPageNumber(), Collections.singletonList(tracker));
+        stripper.setShortCircuit(shortCircuit);
+        stripper.getText(document);
+    }
+
+    /**
+     * This function computes the page areas of the section from the identifier positions and the page turns that
+     * have been recorded by the tracker. The document is not scanned again.
+     * @return
+     */
+    List<Page> getPageAreas()
+    {
+        List<Page> pageAreas = new ArrayList<>();
+        for (Page pageArea : getLazyPageAreas())
         {
-            actualStartPage = oe.extract(stripper.actualStartPageNumber);
+            pageAreas.add(pageArea);
         }
-        else
+        return pageAreas;
+    }
+
+    /**
+     * This function returns the page areas of the section as an iterable that extracts every page area only when
+     * it is reached
+     * @return
+     */
+    Iterable<Page> getLazyPageAreas()
+    {
+        if (!isLocated())
         {
             // Can't locate the specified PDF section
             return Collections.emptyList();
         }
+        return PageAreaIterator::new;
+    }
 
-        // calculate the top margin from collected top margins. the value of marginTop now is equal to average of
-        // top margins
-        marginTop = (float) Math.floor(topMargins.stream().reduce(0.0f, (curSum, elem) -> curSum + elem) / topMargins.size());
-        // we need to compare the value of marginTop and customTopMargin of the PdfSection object. we'll choose the
-        // bigger value
-        marginTop = Math.max(marginTop, pdfSection.getCustomTopMargin());
-
-        List<Page> pageAreas = new ArrayList<>();
-
-        // Here we'll have start position, end position and number of pages between them
+    /**
+     * This function computes the number of page areas of the section. If the start and the end of the section are
+     * on the same page, there is only one page area. Otherwise there is one page area per page turn, and one more
+     * if the end of the section is inside the pages searched for the section.
+     * @return the number of page areas, 0 if the section has not been located
+     */
+    int getNumOfPageAreas()
+    {
+        if (!isLocated())
+        {
+            return 0;
+        }
+        int numOfPageTurns = tracker.getNumOfPageTurns();
         if (numOfPageTurns == 0)
         {
-            // Same page
-            Page foundArea = actualStartPage.getArea(getDetectedRectangle(actualStartPage));
-            pageAreas.add(foundArea);
-        } else
+            return 1;
+        }
+        int lastPageNumber = tracker.getActualStartPageNumber() + numOfPageTurns;
+        return lastPageNumber <= tracker.getLastPageNumber() ? numOfPageTurns + 1 : numOfPageTurns;
+    }
+
+    /**
+     * @return true if the page that contains the start of the section has been found
+     */
+    boolean isLocated()
+    {
+        return tracker.getActualStartPageNumber() <= tracker.getLastPageNumber();
+    }
+
+    /**
+     * This iterator extracts the page areas of the section one after another. Here we have the start position, the
+     * end position and the number of pages between them. If they are on the same page, there is only one page area.
+     * Otherwise there is a first page area, the middle page areas and, if the end of the section is inside the
+     * document, a last page area.
+     */
+    private class PageAreaIterator implements Iterator<Page>
+    {
+        // This is the page that contains the start of the PDF section
+        private final int actualStartPageNumber = tracker.getActualStartPageNumber();
+
+        private final int numOfPageTurns = tracker.getNumOfPageTurns();
+
+        private final int numOfPageAreas = getNumOfPageAreas();
+
+        private int nextPageAreaIndex;
+
+        /**
+         * These values are taken from the start page, so that the start page doesn't have to be kept
+         */
+        private Point2D topLeft;
+        private float startPageRight;
+
+        PageAreaIterator()
         {
-            // use this variable to determine the bottom position of pages.
-            float pageBottom = actualStartPage.getBottom() - pdfSection.getCustomBottomMargin();
+            // calculate the top margin from collected top margins. the value of marginTop now is equal to average of
+            // top margins
+            List<Float> topMargins = tracker.getTopMargins();
+            marginTop = (float) Math.floor(topMargins.stream().reduce(0.0f, (curSum, elem) -> curSum + elem) / topMargins.size());
+            // we need to compare the value of marginTop and customTopMargin of the PdfSection object. we'll choose the
+            // bigger value
+            marginTop = Math.max(marginTop, pdfSection.getCustomTopMargin());
+        }
 
-            // Extract first page
-            Point2D topLeft = getTopLeft(actualStartPage);
-            Page firstPageArea = actualStartPage.getArea((float) topLeft.getY(), (float) topLeft.getX(),
-                    pageBottom, actualStartPage.getRight());
-            pageAreas.add(firstPageArea);
+        @Override
+        public boolean hasNext()
+        {
+            return nextPageAreaIndex < numOfPageAreas;
+        }
 
-            // Extract middle pages
-            for (int currentPageDelta = 1; currentPageDelta < numOfPageTurns; currentPageDelta++)
+        @Override
+        public Page next()
+        {
+            if (!hasNext())
             {
-                Page currentPage = oe.extract(startPageNumber + currentPageDelta);
-                pageBottom = currentPage.getBottom() - pdfSection.getCustomBottomMargin();
-                currentPage = currentPage.getArea(marginTop, (float) topLeft.getX(), pageBottom,
-                        actualStartPage.getRight());
-                pageAreas.add(currentPage);
+                throw new NoSuchElementException();
             }
+            int currentPageDelta = nextPageAreaIndex++;
 
-            // Extract last page
-            int lastPageNumber = startPageNumber + numOfPageTurns;
-            if (lastPageNumber <= oe.getPageCount())
+            if (currentPageDelta == 0)
             {
-                Page lastPage = oe.extract(startPageNumber + numOfPageTurns);
-                Point2D bottomRight = getBottomRight(lastPage);
-                float bottom = (float) bottomRight.getY();
-                if (!pdfSection.isBottomIncluded())
+                Page actualStartPage = pageSource.getPage(actualStartPageNumber);
+                if (numOfPageTurns == 0)
                 {
-                    bottom -= 10;
+                    // Same page
+                    return actualStartPage.getArea(getDetectedRectangle(actualStartPage));
                 }
-                Page lastPageArea = lastPage.getArea(marginTop, (float) topLeft.getX(), bottom,
-                        (float) bottomRight.getX());
-                pageAreas.add(lastPageArea);
+
+                // use this variable to determine the bottom position of pages.
+                float pageBottom = actualStartPage.getBottom() - pdfSection.getCustomBottomMargin();
+
+                // Extract first page
+                topLeft = getTopLeft(actualStartPage);
+                startPageRight = actualStartPage.getRight();
+                return actualStartPage.getArea((float) topLeft.getY(), (float) topLeft.getX(),
+                        pageBottom, startPageRight);
             }
 
-        }
+            Page currentPage = pageSource.getPage(actualStartPageNumber + currentPageDelta);
+            if (currentPageDelta < numOfPageTurns)
+            {
+                // Extract middle pages
+                float pageBottom = currentPage.getBottom() - pdfSection.getCustomBottomMargin();
+                return currentPage.getArea(marginTop, (float) topLeft.getX(), pageBottom, startPageRight);
+            }
 
-        return pageAreas;
+            // Extract last page
+            Point2D bottomRight = getBottomRight(currentPage);
+            float bottom = (float) bottomRight.getY();
+            if (!pdfSection.isBottomIncluded())
+            {
+                bottom -= 10;
+            }
+            return currentPage.getArea(marginTop, (float) topLeft.getX(), bottom, (float) bottomRight.getX());
+        }
     }
 
     /**
@@ -276,6 +278,8 @@ public class PdfSectionLocator {
      */
     private Point2D.Float getTopLeft(Page page)
     {
+        GlyphBox topPosition = tracker.getTopPosition();
+        GlyphBox leftPosition = tracker.getLeftPosition();
         float top = -1, left = -1;
         if (topPosition != null)
         {
@@ -304,6 +308,8 @@ public class PdfSectionLocator {
      */
     private Point2D getBottomRight(Page page)
     {
+        GlyphBox bottomPosition = tracker.getBottomPosition();
+        GlyphBox rightPosition = tracker.getRightPosition();
         float bottom = -1, right = -1;
         if (bottomPosition != null)
         {
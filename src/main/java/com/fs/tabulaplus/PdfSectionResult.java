@@ -0,0 +1,102 @@
+package com.fs.tabulaplus;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of parsing a section of a PDF document: the table extracted from the section and the results of its
+ * sub-sections, in the order in which they are defined. The result of a whole document is the result of its root
+ * section, which has no table of its own.
+ */
+public class PdfSectionResult {
+    private final PdfSection section;
+
+    private final NormalizedTable table;
+
+    private final List<PdfSectionResult> children;
+
+    private final boolean failed;
+
+    public PdfSectionResult(PdfSection section, NormalizedTable table, List<PdfSectionResult> children) {
+        this(section, table, children, false);
+    }
+
+    PdfSectionResult(PdfSection section, NormalizedTable table, List<PdfSectionResult> children, boolean failed) {
+        this.section = section;
+        this.table = table != null ? table : new NormalizedTable();
+        this.children = children != null ? children : Collections.<PdfSectionResult>emptyList();
+        this.failed = failed;
+    }
+
+    public PdfSection getSection() {
+        return section;
+    }
+
+    public String getName() {
+        return section.getName();
+    }
+
+    /**
+     * @return the table of the section, which is empty if the section doesn't exist in the document
+     */
+    public NormalizedTable getTable() {
+        return table;
+    }
+
+    /**
+     * @return true if an error has left tables of the result empty or incomplete. It is only set on the result of
+     * a whole document, and covers all its sections.
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    public List<PdfSectionResult> getChildren() {
+        return children;
+    }
+
+    /**
+     * This function finds the result of a sub-section by its name, with or without spaces
+     * @param name
+     * @return the result, or null if there is no sub-section with this name
+     */
+    public PdfSectionResult getChild(String name) {
+        for (PdfSectionResult child : children) {
+            if (child.getName().equals(name) || child.section.getNameWithoutSpaces().equals(name)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This function maps the names of the sub-sections, without spaces, to their tables, like PdfParser.parse does
+     * @return
+     */
+    public Map<String, NormalizedTable> getChildTables() {
+        Map<String, NormalizedTable> childTables = new LinkedHashMap<>();
+        for (PdfSectionResult child : children) {
+            childTables.put(child.section.getNameWithoutSpaces(), child.table);
+        }
+        return childTables;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb, 0);
+        return sb.toString();
+    }
+
+    private void appendTo(StringBuilder sb, int depth) {
+        for (int i = 0; i < depth; i++) {
+            sb.append("  ");
+        }
+        sb.append(getName()).append(" (").append(table.getRows().size()).append(" rows)\n");
+        for (PdfSectionResult child : children) {
+            child.appendTo(sb, depth + 1);
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.fs.tabulaplus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class keeps track of the identifiers of one PDF section while a document is being scanned. A text stripper,
+ * or the replay of a text index, feeds it with every page start, every string and every page end, and it records
+ * the positions of the top, left, bottom and right identifiers of the section, the page that contains the start of
+ * the section and the number of page turns from the start of the section to its end.
+ */
+class PdfSectionTracker {
+    private final PdfSection pdfSection;
+
+    /**
+     * These are 2D positions of the identifiers of the section
+     */
+    private GlyphBox leftPosition;
+    private GlyphBox rightPosition;
+    private GlyphBox topPosition;
+    private GlyphBox bottomPosition;
+
+    /**
+     * The pages that are searched for the section. They are bounded by the page range hints of the section.
+     */
+    private int firstPageNumber;
+    private int lastPageNumber;
+
+    /**
+     * The page areas of the parent section, if the section is searched for inside its parent
+     */
+    private ParentPageAreas parentPageAreas;
+
+    /**
+     * This variable keeps the page number of the page that contains the start of the PDF section
+     */
+    private int actualStartPageNumber;
+
+    /**
+     * This variable keeps track of the number of page turns needed to go from the start of the PDF section to
+     * the end of the PDF section. For example, if the start of a section is on page 1 and the end of the section is on
+     * page 2, then the numOfPageTurns = 1
+     */
+    private int numOfPageTurns;
+
+    /**
+     * This variable maintains the top margins of the scanned pages. The scan starts from a start page and goes page
+     * after page, and the top margin of every scanned page is collected.
+     */
+    private final List<Float> topMargins = new ArrayList<>();
+
+    /**
+     * This variable keeps track of whether the scanner has just started on a new page
+     */
+    private boolean pageStarted;
+
+    /**
+     * The ids of the identifiers of the section in the identifier matcher of the scan.
+     * The left and right ids are -1 when the section doesn't have these identifiers.
+     */
+    private int[] topIdentifierIds;
+    private int[] bottomIdentifierIds;
+    private int leftIdentifierId = -1;
+    private int rightIdentifierId = -1;
+
+    /**
+     * A tracker only handles the pages and strings of a scan when it is armed. Trackers are armed from the start,
+     * except in an ordered scan, where a tracker is armed when the previous section ends.
+     */
+    private boolean armed = true;
+
+    /**
+     * Constructor
+     * @param section
+     * @param startPageNumber the page the scan starts on
+     * @param pageCount the number of pages of the document
+     */
+    PdfSectionTracker(PdfSection section, int startPageNumber, int pageCount)
+    {
+        this.pdfSection = section;
+
+        int first = Math.max(startPageNumber, section.getStartPage());
+        if (section.getSearchLastNPages() > 0)
+        {
+            first = Math.max(first, pageCount - section.getSearchLastNPages() + 1);
+        }
+        this.firstPageNumber = first;
+        this.lastPageNumber = section.getMaxPage() > 0 ? Math.min(section.getMaxPage(), pageCount) : pageCount;
+        this.actualStartPageNumber = first;
+    }
+
+    /**
+     * This function stops the tracker from handling the scan until it is armed
+     */
+    void disarm()
+    {
+        armed = false;
+    }
+
+    /**
+     * This function lets the tracker handle the scan from the given page on. The section can't start before it.
+     * @param pageNumber
+     */
+    void arm(int pageNumber)
+    {
+        if (!armed)
+        {
+            armed = true;
+            actualStartPageNumber = Math.max(firstPageNumber, pageNumber);
+        }
+    }
+
+    boolean isArmed()
+    {
+        return armed;
+    }
+
+    /**
+     * @return true if the start of the section has been found. A section without top identifiers starts as soon
+     * as its tracker is armed.
+     */
+    boolean isFound()
+    {
+        return armed && (pdfSection.getTopIdentifiers() == null || topPosition != null);
+    }
+
+    /**
+     * @return true if the bottom identifier of the section has been found
+     */
+    boolean isBottomFound()
+    {
+        return bottomPosition != null;
+    }
+
+    /**
+     * This function restricts the search for the section to the page areas of its parent section
+     * @param parentPageAreas
+     */
+    void restrictTo(ParentPageAreas parentPageAreas)
+    {
+        this.parentPageAreas = parentPageAreas;
+        this.firstPageNumber = Math.max(firstPageNumber, parentPageAreas.getFirstPageNumber());
+        this.lastPageNumber = Math.min(lastPageNumber, parentPageAreas.getLastPageNumber());
+        this.actualStartPageNumber = firstPageNumber;
+    }
+
+    /**
+     * @param pageNumber
+     * @param textRun
+     * @return true if the string is inside the page areas of the parent section, or if there is no parent section
+     */
+    boolean isInParent(int pageNumber, TextRun textRun)
+    {
+        return parentPageAreas == null || parentPageAreas.contains(pageNumber, textRun.getFirst());
+    }
+
+    /**
+     * @param pageNumber
+     * @return true if the page is one of the pages searched for the section
+     */
+    boolean isInRange(int pageNumber)
+    {
+        return pageNumber >= firstPageNumber && pageNumber <= lastPageNumber;
+    }
+
+    /**
+     * This function adds the identifiers of the section to the matcher that is shared by all sections of a scan
+     * @param matcher
+     */
+    void addIdentifiers(IdentifierMatcher matcher)
+    {
+        topIdentifierIds = matcher.addAll(pdfSection.getTopIdentifiers());
+        bottomIdentifierIds = matcher.addAll(pdfSection.getBottomIdentifiers());
+        if (pdfSection.getLeftIdentifier() != null)
+        {
+            leftIdentifierId = matcher.add(pdfSection.getLeftIdentifier());
+        }
+        if (pdfSection.getRightIdentifier() != null)
+        {
+            rightIdentifierId = matcher.add(pdfSection.getRightIdentifier());
+        }
+    }
+
+    /**
+     * Every time a new page is scanned, this function is called
+     */
+    void startPage()
+    {
+        pageStarted = true;
+    }
+
+    /**
+     * When the scanner reaches the end of a page, this function gets called
+     */
+    void endPage()
+    {
+        if (topPosition == null)
+        {
+            this.actualStartPageNumber++;
+        }
+        if ((pdfSection.getTopIdentifiers() == null || topPosition != null) && (bottomPosition == null))
+        {
+            numOfPageTurns++;
+        }
+    }
+
+    /**
+     * This function gets called whenever a string is written by the scanner. The matcher has already been run
+     * on the string and tells which identifiers the string matches.
+     * @param textRun
+     * @param matcher
+     */
+    void writeString(TextRun textRun, IdentifierMatcher matcher)
+    {
+        if (pageStarted)
+        {
+            // a new page has just started, we need to collect the top margin of this page
+            pageStarted = false;
+            topMargins.add(textRun.getFirst().getY());
+        }
+
+        // determine the top boundary
+        if (topIdentifierIds != null && topPosition == null)
+        {
+            if (matcher.isAnyMatched(topIdentifierIds))
+            {
+                topPosition = textRun.getFirst();
+            }
+        }
+
+        // determine the left boundary
+        if (leftIdentifierId >= 0 && leftPosition == null)
+        {
+            if (matcher.isMatched(leftIdentifierId))
+            {
+                leftPosition = pdfSection.isLeftIncluded() ? textRun.getFirst() : textRun.getLast();
+            }
+        }
+
+        // determine the bottom boundary
+        if ((topIdentifierIds == null || topPosition != null) && bottomIdentifierIds != null
+                && bottomPosition == null)
+        {
+            if (matcher.isAnyMatched(bottomIdentifierIds))
+            {
+                bottomPosition = textRun.getFirst();
+            }
+        }
+
+        // determine the right boundary
+        if ((leftIdentifierId < 0 || leftPosition != null) && rightIdentifierId >= 0
+                && rightPosition == null)
+        {
+            if (matcher.isMatched(rightIdentifierId))
+            {
+                rightPosition = pdfSection.isRightIncluded() ? textRun.getLast() : textRun.getFirst();
+            }
+        }
+    }
+
+    /**
+     * This function checks whether every identifier that the section needs has been found and the section ends on
+     * the page it starts on. Nothing that is scanned afterwards can change the page areas of a resolved section.
+     * A section that runs across pages is never resolved, because the top margin used for its middle and last pages
+     * is averaged over all scanned pages, unless the last page of its range has been scanned.
+     * @param pageNumber the page that has just been scanned
+     * @return
+     */
+    boolean isResolved(int pageNumber)
+    {
+        if (pageNumber >= lastPageNumber)
+        {
+            // no page that is scanned afterwards belongs to the section
+            return true;
+        }
+        return pdfSection.getTopIdentifiers() != null && topPosition != null
+                && pdfSection.getBottomIdentifiers() != null && bottomPosition != null
+                && (pdfSection.getLeftIdentifier() == null || leftPosition != null)
+                && (pdfSection.getRightIdentifier() == null || rightPosition != null)
+                && numOfPageTurns == 0;
+    }
+
+    PdfSection getPdfSection()
+    {
+        return pdfSection;
+    }
+
+    GlyphBox getLeftPosition()
+    {
+        return leftPosition;
+    }
+
+    GlyphBox getRightPosition()
+    {
+        return rightPosition;
+    }
+
+    GlyphBox getTopPosition()
+    {
+        return topPosition;
+    }
+
+    GlyphBox getBottomPosition()
+    {
+        return bottomPosition;
+    }
+
+    int getFirstPageNumber()
+    {
+        return firstPageNumber;
+    }
+
+    int getLastPageNumber()
+    {
+        return lastPageNumber;
+    }
+
+    int getActualStartPageNumber()
+    {
+        return actualStartPageNumber;
+    }
+
+    int getNumOfPageTurns()
+    {
+        return numOfPageTurns;
+    }
+
+    List<Float> getTopMargins()
+    {
+        return topMargins;
+    }
+}
@@ -0,0 +1,576 @@
+package com.fs.tabulaplus;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * This class watches a drop folder and parses every PDF file that appears in it with the same PdfParser. A document
+ * goes through three stages, each with its own threads, which are connected by bounded queues so that the disk I/O
+ * of one document overlaps the parsing of another one:
+ * <ul>
+ * <li>load, which reads the file and loads the PDF document,</li>
+ * <li>parse, which locates the sections and extracts their tables,</li>
+ * <li>write, which writes the tables to "&lt;file name&gt;.json" in the output directory, in the format of the
+ * result cache.</li>
+ * </ul>
+ * When a queue is full, the stage before it waits, which caps the number of loaded documents.
+ *
+ * The files are handed over with renames in the drop folder: a file is first moved to processing/ under a unique
+ * name, so that it is taken only once and never replaces another file of the same name that is in flight, then to
+ * done/ under its own name once its result has been written, or to failed/ if any stage fails or sections of the
+ * document fail, which leaves their tables empty or incomplete, and no result is written then. The result is
+ * written to a temporary file that is then moved, so readers of the output directory never see a partly written
+ * result. Files still in processing/ when the daemon stops are put back in the drop folder when it starts again.
+ *
+ * The files must be moved into the drop folder when they are complete. Files whose names start with "." or end with
+ * ".tmp" or ".part" are ignored, so a file can be copied under such a name and then renamed.
+ */
+public class PdfWatchDaemon implements Closeable {
+    public static final String PROCESSING_DIRECTORY = "processing";
+    public static final String DONE_DIRECTORY = "done";
+    public static final String FAILED_DIRECTORY = "failed";
+
+    private static final long DEFAULT_REPORT_INTERVAL_MILLIS = 60_000;
+
+    /**
+     * The prefix of the names of the files in processing/, a random UUID and a dot
+     */
+    private static final Pattern CLAIM_PREFIX =
+            Pattern.compile("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}\\.");
+
+    private Logger logger = LoggerFactory.getLogger(PdfWatchDaemon.class);
+
+    private final PdfParser pdfParser;
+
+    private final Path dropDirectory;
+    private final Path processingDirectory;
+    private final Path doneDirectory;
+    private final Path failedDirectory;
+    private final Path outputDirectory;
+
+    private final int numOfParsers;
+
+    private final BlockingQueue<Path> loadQueue;
+    private final BlockingQueue<Document> parseQueue;
+    private final BlockingQueue<Document> writeQueue;
+
+    private final StageMetrics loadMetrics = new StageMetrics("load");
+    private final StageMetrics parseMetrics = new StageMetrics("parse");
+    private final StageMetrics writeMetrics = new StageMetrics("write");
+
+    private final ExecutorService stages;
+
+    private final WatchService watchService;
+
+    private long reportIntervalMillis = DEFAULT_REPORT_INTERVAL_MILLIS;
+
+    private volatile boolean running;
+
+    /**
+     * A document on its way through the stages
+     */
+    private static class Document
+    {
+        /**
+         * The file in processing/
+         */
+        final Path file;
+
+        /**
+         * The name of the file in the drop folder
+         */
+        final String fileName;
+
+        PDDocument document;
+        Map<String, NormalizedTable> tables;
+
+        Document(Path file)
+        {
+            this.file = file;
+            this.fileName = getOriginalName(file);
+        }
+    }
+
+    /**
+     * Constructor. The subdirectories of the drop folder and the output directory are created if they don't exist.
+     * @param pdfParser the parser of all documents, shared by the parse threads
+     * @param dropDirectory the watched directory
+     * @param outputDirectory the directory of the results
+     * @param numOfParsers the number of documents that are parsed at the same time
+     * @param queueCapacity the number of documents that can wait between two stages
+     * @throws IOException if the directories can't be created or watched
+     */
+    public PdfWatchDaemon(PdfParser pdfParser, Path dropDirectory, Path outputDirectory, int numOfParsers,
+                          int queueCapacity) throws IOException
+    {
+        if (numOfParsers < 1 || queueCapacity < 1)
+        {
+            throw new IllegalArgumentException("Invalid daemon limits: numOfParsers=" + numOfParsers
+                    + ", queueCapacity=" + queueCapacity);
+        }
+        this.pdfParser = pdfParser;
+        this.dropDirectory = dropDirectory;
+        this.processingDirectory = Files.createDirectories(dropDirectory.resolve(PROCESSING_DIRECTORY));
+        this.doneDirectory = Files.createDirectories(dropDirectory.resolve(DONE_DIRECTORY));
+        this.failedDirectory = Files.createDirectories(dropDirectory.resolve(FAILED_DIRECTORY));
+        this.outputDirectory = Files.createDirectories(outputDirectory);
+        this.numOfParsers = numOfParsers;
+        this.loadQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.parseQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writeQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.stages = Executors.newFixedThreadPool(numOfParsers + 2);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        dropDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+    }
+
+    public void setReportIntervalMillis(long reportIntervalMillis)
+    {
+        this.reportIntervalMillis = reportIntervalMillis;
+    }
+
+    public StageMetrics getLoadMetrics()
+    {
+        return loadMetrics;
+    }
+
+    public StageMetrics getParseMetrics()
+    {
+        return parseMetrics;
+    }
+
+    public StageMetrics getWriteMetrics()
+    {
+        return writeMetrics;
+    }
+
+    /**
+     * This function starts the stages and watches the drop folder until the daemon is closed. The files that are
+     * already in the drop folder are parsed first. The throughput of every stage is logged at the report interval.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void run() throws IOException, InterruptedException
+    {
+        running = true;
+        stages.execute(this::load);
+        for (int i = 0; i < numOfParsers; i++)
+        {
+            stages.execute(this::parse);
+        }
+        stages.execute(this::write);
+
+        // the files that were being handled when the daemon stopped are handled again
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(processingDirectory)) {
+            for (Path file : files)
+            {
+                restore(file);
+            }
+        }
+        scanDropDirectory();
+
+        long lastReport = System.currentTimeMillis();
+        try {
+            while (running)
+            {
+                WatchKey key = watchService.poll(reportIntervalMillis, TimeUnit.MILLISECONDS);
+                if (key != null)
+                {
+                    for (WatchEvent<?> event : key.pollEvents())
+                    {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        {
+                            // some events are lost, so the files are found by listing the folder
+                            scanDropDirectory();
+                        }
+                        else
+                        {
+                            offer(dropDirectory.resolve((Path) event.context()));
+                        }
+                    }
+                    key.reset();
+                }
+                if (System.currentTimeMillis() - lastReport >= reportIntervalMillis)
+                {
+                    logger.info("Throughput of the stages:\n" + getReport());
+                    lastReport = System.currentTimeMillis();
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // the daemon has been closed
+        }
+    }
+
+    private void scanDropDirectory() throws IOException, InterruptedException
+    {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dropDirectory)) {
+            for (Path file : files)
+            {
+                offer(file);
+            }
+        }
+    }
+
+    private void offer(Path file) throws InterruptedException
+    {
+        String fileName = file.getFileName().toString();
+        if (fileName.startsWith(".") || fileName.endsWith(".tmp") || fileName.endsWith(".part")
+                || !Files.isRegularFile(file))
+        {
+            return;
+        }
+        // wait here while the load stage is behind
+        while (running && !loadQueue.offer(file, reportIntervalMillis, TimeUnit.MILLISECONDS))
+        {
+            logger.info("The load stage is behind, waiting");
+        }
+    }
+
+    private void load()
+    {
+        try {
+            while (true)
+            {
+                Path file = loadQueue.take();
+                Document document;
+                try {
+                    document = new Document(claim(file));
+                } catch (NoSuchFileException e) {
+                    // the file has been offered twice and is already taken
+                    continue;
+                } catch (IOException e) {
+                    logger.error("Can't take " + file, e);
+                    continue;
+                }
+                long start = System.nanoTime();
+                try {
+                    // the document is loaded from the file, so its bytes are not kept in memory besides it
+                    document.document = PDDocument.load(document.file.toFile());
+                    loadMetrics.done(System.nanoTime() - start, Files.size(document.file));
+                } catch (Exception e) { // a broken document must not stop the daemon
+                    loadMetrics.failed(System.nanoTime() - start);
+                    fail(document, e);
+                    continue;
+                }
+                parseQueue.put(document);
+            }
+        } catch (InterruptedException e) {
+            // the daemon has been closed
+        }
+    }
+
+    private void parse()
+    {
+        try {
+            while (true)
+            {
+                Document document = parseQueue.take();
+                long start = System.nanoTime();
+                try {
+                    // the document is closed by the parser
+                    PdfSectionResult result = pdfParser.parseResult(document.document);
+                    document.document = null;
+                    if (result.hasFailed())
+                    {
+                        parseMetrics.failed(System.nanoTime() - start);
+                        logger.error("Sections of " + document.fileName
+                                + " failed, their tables are empty or incomplete");
+                        moveToFailed(document);
+                        continue;
+                    }
+                    document.tables = result.getChildTables();
+                    parseMetrics.done(System.nanoTime() - start, 0);
+                } catch (Exception e) { // a broken document must not stop the daemon
+                    parseMetrics.failed(System.nanoTime() - start);
+                    document.document = null;
+                    fail(document, e);
+                    continue;
+                }
+                writeQueue.put(document);
+            }
+        } catch (InterruptedException e) {
+            // the daemon has been closed
+        }
+    }
+
+    private void write()
+    {
+        try {
+            while (true)
+            {
+                Document document = writeQueue.take();
+                long start = System.nanoTime();
+                try {
+                    byte[] result = ParseResultCache.serialize(document.tables);
+                    writeResult(document.fileName + ParseResultCache.FILE_EXTENSION, result);
+                    move(document.file, doneDirectory, document.fileName);
+                    writeMetrics.done(System.nanoTime() - start, result.length);
+                } catch (Exception e) { // a broken document must not stop the daemon
+                    writeMetrics.failed(System.nanoTime() - start);
+                    fail(document, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // the daemon has been closed
+        }
+    }
+
+    /**
+     * This function writes a result to a temporary file that is then moved to the result file, so that readers
+     * never see a partly written result
+     */
+    private void writeResult(String fileName, byte[] result) throws IOException
+    {
+        Path tempFile = Files.createTempFile(outputDirectory, fileName, ".tmp");
+        try {
+            Files.write(tempFile, result);
+            try {
+                Files.move(tempFile, outputDirectory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, outputDirectory.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+        } finally {
+            if (tempFile != null) {
+                tempFile.toFile().delete();
+            }
+        }
+    }
+
+    private void fail(Document document, Exception error)
+    {
+        logger.error("Failed to parse " + document.fileName, error);
+        moveToFailed(document);
+    }
+
+    /**
+     * This function closes the PDF document of a document that has failed, if it is still open, and moves its file
+     * to failed/
+     * @param document
+     */
+    private void moveToFailed(Document document)
+    {
+        if (document.document != null)
+        {
+            try {
+                document.document.close();
+            } catch (IOException e) {
+                logger.warn("Can't close " + document.fileName + ": " + e.getMessage());
+            }
+        }
+        try {
+            move(document.file, failedDirectory, document.fileName);
+        } catch (IOException e) {
+            logger.error("Can't move " + document.file + " to " + failedDirectory, e);
+        }
+    }
+
+    /**
+     * This function renames a file of the drop folder into processing/ under a name that no other file has
+     * @param file
+     * @return the new path of the file
+     * @throws IOException
+     */
+    private Path claim(Path file) throws IOException
+    {
+        Path target = processingDirectory.resolve(UUID.randomUUID() + "." + file.getFileName());
+        return Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * This function puts a file of processing/ back in the drop folder under its own name, unless a new file of
+     * that name has been dropped in the meantime, in which case the file keeps its name from processing/
+     * @param file
+     * @throws IOException
+     */
+    private void restore(Path file) throws IOException
+    {
+        Path target = dropDirectory.resolve(getOriginalName(file));
+        if (Files.exists(target))
+        {
+            target = dropDirectory.resolve(file.getFileName());
+        }
+        // an atomic rename replaces the target on most file systems, which is why the target is checked first
+        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param file a file of processing/
+     * @return the name the file had in the drop folder
+     */
+    private static String getOriginalName(Path file)
+    {
+        return CLAIM_PREFIX.matcher(file.getFileName().toString()).replaceFirst("");
+    }
+
+    /**
+     * This function renames a file into a directory, replacing a file of the same name
+     * @param file
+     * @param directory
+     * @param fileName the new name of the file
+     * @return the new path of the file
+     * @throws IOException
+     */
+    private static Path move(Path file, Path directory, String fileName) throws IOException
+    {
+        Path target = directory.resolve(fileName);
+        return Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the throughput of every stage, one stage per line
+     */
+    public String getReport()
+    {
+        return loadMetrics + "\n" + parseMetrics + "\n" + writeMetrics;
+    }
+
+    /**
+     * This function stops watching and stops the stages. The documents that are in flight stay in processing/ and
+     * are handled again when the daemon starts again.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException
+    {
+        running = false;
+        watchService.close();
+        stages.shutdownNow();
+        logger.info("Throughput of the stages:\n" + getReport());
+    }
+
+    /**
+     * The counts and times of one stage. The throughput is measured from the creation of the daemon, and the busy
+     * time is the time spent by all threads of the stage in documents, so a busy ratio close to the number of
+     * threads means the stage is the bottleneck.
+     */
+    public static class StageMetrics {
+        private final String name;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong documentCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong byteCount = new AtomicLong();
+
+        StageMetrics(String name)
+        {
+            this.name = name;
+        }
+
+        void done(long nanos, long bytes)
+        {
+            documentCount.incrementAndGet();
+            busyNanos.addAndGet(nanos);
+            byteCount.addAndGet(bytes);
+        }
+
+        void failed(long nanos)
+        {
+            failureCount.incrementAndGet();
+            busyNanos.addAndGet(nanos);
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public long getDocumentCount()
+        {
+            return documentCount.get();
+        }
+
+        public long getFailureCount()
+        {
+            return failureCount.get();
+        }
+
+        public long getBusyNanos()
+        {
+            return busyNanos.get();
+        }
+
+        /**
+         * @return the bytes read by the load stage or written by the write stage
+         */
+        public long getByteCount()
+        {
+            return byteCount.get();
+        }
+
+        /**
+         * @return the number of documents done per second since the daemon has been created
+         */
+        public double getDocumentsPerSecond()
+        {
+            return documentCount.get() / getElapsedSeconds();
+        }
+
+        private double getElapsedSeconds()
+        {
+            return Math.max(System.nanoTime() - startNanos, 1) / 1e9;
+        }
+
+        @Override
+        public String toString()
+        {
+            double elapsedSeconds = getElapsedSeconds();
+            return String.format("%s: documents=%d, failures=%d, documents/s=%.2f, MB/s=%.2f, busy=%.2f",
+                    name, documentCount.get(), failureCount.get(), documentCount.get() / elapsedSeconds,
+                    byteCount.get() / 1e6 / elapsedSeconds, busyNanos.get() / 1e9 / elapsedSeconds);
+        }
+    }
+
+    /**
+     * This function starts a daemon
+     * @param args the schema file, the drop folder, the output directory and optionally the number of documents
+     *             parsed at the same time, which is the number of processors by default
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length < 3)
+        {
+            System.err.println("Usage: PdfWatchDaemon <schema file> <drop folder> <output directory> [parsers]");
+            System.exit(1);
+        }
+        int numOfParsers = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        PdfWatchDaemon daemon = new PdfWatchDaemon(new PdfParser(args[0]), Paths.get(args[1]), Paths.get(args[2]),
+                numOfParsers, numOfParsers * 2);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                daemon.close();
+            } catch (IOException e) {
+                // the daemon is stopping anyway
+            }
+        }));
+        daemon.run();
+    }
+}
@@ -0,0 +1,194 @@
+package com.fs.tabulaplus;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.csv.CsvFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * A row handler that writes the rows of the sections straight to output streams with Jackson generators while
+ * the document is parsed, so that no table is kept in memory. It has two modes:
+ * <ul>
+ * <li>one output per section, where every section gets its own output, opened when the section starts and closed
+ * when it ends, with the rows of the section as CSV lines or as a JSON array of arrays,</li>
+ * <li>NDJSON per document, where all rows of all sections go to a single output as one JSON object per line, of the
+ * form {"section":"Table_7","row":["...","..."]}.</li>
+ * </ul>
+ * Every row is written as soon as it has been extracted. Writing errors are thrown as UncheckedIOException, which
+ * stops the parsing.
+ *
+ * Usage: {@code parser.parse(pdfFile, SectionRowExporter.toDirectory(directory, SectionRowExporter.Format.CSV))}
+ */
+public class SectionRowExporter implements SectionRowHandler, Closeable {
+    public enum Format {
+        CSV(".csv"),
+        JSON(".json");
+
+        private final String fileExtension;
+
+        Format(String fileExtension) {
+            this.fileExtension = fileExtension;
+        }
+
+        public String getFileExtension() {
+            return fileExtension;
+        }
+    }
+
+    /**
+     * The outputs of the sections in the one output per section mode
+     */
+    public interface SectionOutputs {
+        /**
+         * This function opens the output of a section. The output is closed by the exporter when the section ends.
+         * @param section
+         * @return
+         * @throws IOException
+         */
+        OutputStream open(PdfSection section) throws IOException;
+    }
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final CsvFactory CSV_FACTORY = new CsvFactory();
+
+    private final Format format;
+
+    /**
+     * The outputs of the sections, or null in the NDJSON per document mode
+     */
+    private final SectionOutputs sectionOutputs;
+
+    /**
+     * The generator of the current section in the one output per section mode, or the generator of the document
+     * in the NDJSON per document mode
+     */
+    private JsonGenerator generator;
+
+    private SectionRowExporter(Format format, SectionOutputs sectionOutputs, JsonGenerator generator) {
+        this.format = format;
+        this.sectionOutputs = sectionOutputs;
+        this.generator = generator;
+    }
+
+    /**
+     * This function creates an exporter that writes every section to its own output
+     * @param sectionOutputs
+     * @param format
+     * @return
+     */
+    public static SectionRowExporter perSection(SectionOutputs sectionOutputs, Format format) {
+        return new SectionRowExporter(format, sectionOutputs, null);
+    }
+
+    /**
+     * This function creates an exporter that writes every section to a file named after the section in a directory,
+     * for example "Table_7.csv". Existing files are overwritten.
+     * @param directory
+     * @param format
+     * @return
+     */
+    public static SectionRowExporter toDirectory(File directory, Format format) {
+        return perSection(section -> new BufferedOutputStream(new FileOutputStream(
+                new File(directory, section.getNameWithoutSpaces() + format.getFileExtension()))), format);
+    }
+
+    /**
+     * This function creates an exporter that writes the rows of all sections to one output, one JSON object per
+     * line. The output is not closed by the exporter, so that the rows of many documents can be written to it;
+     * close flushes it.
+     * @param out
+     * @return
+     * @throws IOException
+     */
+    public static SectionRowExporter toNdjson(OutputStream out) throws IOException {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // the lines are ended by the exporter, also after the last row
+        generator.setRootValueSeparator(null);
+        return new SectionRowExporter(Format.JSON, null, generator);
+    }
+
+    @Override
+    public void startSection(PdfSection section) {
+        if (sectionOutputs == null) {
+            return;
+        }
+        try {
+            OutputStream out = sectionOutputs.open(section);
+            if (format == Format.CSV) {
+                generator = CSV_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+            } else {
+                generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+                generator.writeStartArray();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void handleRow(PdfSection section, NormalizedRow row) {
+        try {
+            if (sectionOutputs == null) {
+                generator.writeStartObject();
+                generator.writeStringField("section", section.getNameWithoutSpaces());
+                generator.writeFieldName("row");
+                writeRow(row);
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                // the line is handed to the output as soon as it is complete
+                generator.flush();
+            } else {
+                writeRow(row);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeRow(NormalizedRow row) throws IOException {
+        generator.writeStartArray();
+        for (int i = 0; i < row.size(); i++) {
+            generator.writeString(row.get(i));
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public void endSection(PdfSection section) {
+        if (sectionOutputs == null) {
+            return;
+        }
+        try {
+            if (format == Format.JSON) {
+                generator.writeEndArray();
+            }
+            // closing the generator closes the output of the section
+            generator.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            generator = null;
+        }
+    }
+
+    /**
+     * This function flushes the NDJSON output, or closes the output of a section that has not ended because the
+     * parsing failed
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (generator != null) {
+            generator.close();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.fs.tabulaplus;
+
+/**
+ * A handler that receives the rows of the sections of a PDF document as they are extracted, instead of getting
+ * them all at once in a NormalizedTable. The sections come in the order in which they are defined, and every
+ * section is started and ended even if it doesn't exist in the document.
+ */
+public interface SectionRowHandler {
+    /**
+     * This function gets called before the first row of a section
+     * @param section
+     */
+    default void startSection(PdfSection section) {
+    }
+
+    /**
+     * This function gets called for every row of a section, as soon as the row has been extracted
+     * @param section
+     * @param row
+     */
+    void handleRow(PdfSection section, NormalizedRow row);
+
+    /**
+     * This function gets called after the last row of a section
+     * @param section
+     */
+    default void endSection(PdfSection section) {
+    }
+}
@@ -0,0 +1,212 @@
+package com.fs.tabulaplus;
+
+import technology.tabula.Page;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * This class hands every page start, every string and every page end of a scan to a list of section trackers.
+ * The identifiers of all trackers are compiled into one matcher, so that every string is matched once for all
+ * sections. Every tracker only gets the events of the pages in its own page range, and only the strings inside
+ * its parent section if it is a sub-section.
+ *
+ * In an ordered group, the trackers follow the order of the sections in the document: a tracker only gets events
+ * once the previous section has ended, which is when the bottom identifier of the previous section is found,
+ * starting with the string that contains it, or when the scan passes the last page of the previous section, for a
+ * section without bottom identifiers or whose bottom identifier is not in its page range.
+ *
+ * The events come either from a text stripper that scans the document or from a text index that has recorded an
+ * earlier scan, and both give the trackers the same positions.
+ */
+class SectionTrackerGroup
+{
+    private final List<PdfSectionTracker> trackers;
+
+    private final IdentifierMatcher identifierMatcher = new IdentifierMatcher();
+
+    private final boolean ordered;
+
+    SectionTrackerGroup(List<PdfSectionTracker> trackers)
+    {
+        this(trackers, false);
+    }
+
+    SectionTrackerGroup(List<PdfSectionTracker> trackers, boolean ordered)
+    {
+        this.trackers = trackers;
+        this.ordered = ordered;
+        for (PdfSectionTracker tracker : trackers)
+        {
+            tracker.addIdentifiers(identifierMatcher);
+        }
+        identifierMatcher.compile();
+        if (ordered)
+        {
+            for (int i = 1; i < trackers.size(); i++)
+            {
+                trackers.get(i).disarm();
+            }
+        }
+    }
+
+    /**
+     * @return the first page that any tracker needs, or 0 if there are no trackers
+     */
+    int getFirstPageNumber()
+    {
+        return trackers.stream().mapToInt(PdfSectionTracker::getFirstPageNumber).min().orElse(0);
+    }
+
+    /**
+     * @return the last page that any tracker needs, or 0 if there are no trackers
+     */
+    int getLastPageNumber()
+    {
+        return trackers.stream().mapToInt(PdfSectionTracker::getLastPageNumber).max().orElse(0);
+    }
+
+    void startPage(int pageNumber)
+    {
+        for (PdfSectionTracker tracker : trackers)
+        {
+            if (tracker.isArmed() && tracker.isInRange(pageNumber))
+            {
+                tracker.startPage();
+            }
+        }
+    }
+
+    void writeString(int pageNumber, TextRun textRun)
+    {
+        identifierMatcher.match(textRun.getText());
+        for (int i = 0; i < trackers.size(); i++)
+        {
+            PdfSectionTracker tracker = trackers.get(i);
+            if (!tracker.isArmed() || !tracker.isInRange(pageNumber) || !tracker.isInParent(pageNumber, textRun))
+            {
+                continue;
+            }
+            boolean bottomFound = tracker.isBottomFound();
+            tracker.writeString(textRun, identifierMatcher);
+            if (ordered && !bottomFound && tracker.isBottomFound() && i + 1 < trackers.size())
+            {
+                // the next section can start right at the end of this one, even in the same string
+                trackers.get(i + 1).arm(pageNumber);
+            }
+        }
+    }
+
+    /**
+     * @param pageNumber
+     * @return true if all trackers are resolved at the end of the page
+     */
+    boolean endPage(int pageNumber)
+    {
+        for (PdfSectionTracker tracker : trackers)
+        {
+            if (tracker.isArmed() && tracker.isInRange(pageNumber))
+            {
+                tracker.endPage();
+            }
+        }
+        boolean allResolved = true;
+        for (int i = 0; i < trackers.size(); i++)
+        {
+            PdfSectionTracker tracker = trackers.get(i);
+            if (ordered && tracker.isArmed() && pageNumber >= tracker.getLastPageNumber() && i + 1 < trackers.size())
+            {
+                // the section ends with its page range, so the next section can start on the next page. the trackers
+                // armed here have not seen this page, and a whole run of ended sections is passed at once.
+                trackers.get(i + 1).arm(pageNumber + 1);
+            }
+            allResolved = allResolved && tracker.isResolved(pageNumber);
+        }
+        return allResolved;
+    }
+
+    /**
+     * This function feeds the trackers with the pages of a text index that they need, like a text stripper would do.
+     * A tracker only reacts to the strings that match one of its identifiers and to the first string it gets on a
+     * page, which gives the top margin of the page, so only these strings are fed, in the order in which they have
+     * been written, and the trackers get the same positions as from a full replay. The matching strings are looked
+     * up by text in the index of every page. When the trackers are restricted to the page areas of a parent section,
+     * only the strings that overlap the page areas are fed, and the first string inside a page area is looked up in
+     * the spatial index of the page.
+     * @param index
+     * @param shortCircuit true if the replay should stop at the end of the page on which all trackers are resolved
+     * @param parentPageAreas the page areas that all trackers are restricted to, or null
+     * @return the number of pages that have been replayed
+     */
+    int replay(DocumentTextIndex index, boolean shortCircuit, ParentPageAreas parentPageAreas)
+    {
+        int firstPageNumber = getFirstPageNumber();
+        int lastPageNumber = getLastPageNumber();
+        int numOfPages = 0;
+        for (DocumentTextIndex.IndexedPage page : index.getPages())
+        {
+            int pageNumber = page.getPageNumber();
+            if (pageNumber < firstPageNumber || pageNumber > lastPageNumber)
+            {
+                continue;
+            }
+            numOfPages++;
+            if (page.isStarted())
+            {
+                startPage(pageNumber);
+            }
+            List<TextRun> textRuns = page.getTextRuns();
+            for (int textRunIndex : findTextRuns(page, parentPageAreas))
+            {
+                writeString(pageNumber, textRuns.get(textRunIndex));
+            }
+            if (endPage(pageNumber) && shortCircuit)
+            {
+                break;
+            }
+        }
+        return numOfPages;
+    }
+
+    /**
+     * @param page
+     * @param parentPageAreas
+     * @return the indexes of the strings of the page that match an identifier, and of the first string of the page
+     * that the trackers get, in ascending order
+     */
+    private int[] findTextRuns(DocumentTextIndex.IndexedPage page, ParentPageAreas parentPageAreas)
+    {
+        PageTextGrid grid = page.getGrid();
+        int[] matchingTextRuns = grid.findTextRuns(identifierMatcher.getIdentifiers());
+        if (parentPageAreas == null)
+        {
+            return page.getTextRuns().isEmpty() ? matchingTextRuns
+                    : IntStream.concat(IntStream.of(0), IntStream.of(matchingTextRuns)).distinct().toArray();
+        }
+        Page pageArea = parentPageAreas.getPageArea(page.getPageNumber());
+        if (pageArea == null)
+        {
+            return new int[0];
+        }
+        List<TextRun> textRuns = page.getTextRuns();
+        IntStream.Builder result = IntStream.builder();
+        for (int textRunIndex : grid.findTextRunsIntersecting(pageArea.getLeft(), pageArea.getTop(),
+                pageArea.getRight(), pageArea.getBottom()))
+        {
+            if (parentPageAreas.contains(page.getPageNumber(), textRuns.get(textRunIndex).getFirst()))
+            {
+                result.add(textRunIndex);
+                break;
+            }
+        }
+        for (int textRunIndex : matchingTextRuns)
+        {
+            if (PageTextGrid.intersects(textRuns.get(textRunIndex), pageArea.getLeft(), pageArea.getTop(),
+                    pageArea.getRight(), pageArea.getBottom()))
+            {
+                result.add(textRunIndex);
+            }
+        }
+        return result.build().sorted().distinct().toArray();
+    }
+}
@@ -0,0 +1,197 @@
+package com.fs.tabulaplus;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * This class keeps the text indexes of PDF files on disk, so that a file that is parsed again, for example with a
+ * revised schema, is not stripped again to locate its sections. The indexes are kept either next to the PDF files,
+ * as "&lt;file name&gt;.tpindex", or in a cache directory, as "&lt;SHA-256 of the file&gt;.tpindex". An index is only
+ * used if the hash of the file it was built from is the hash of the file being parsed.
+ */
+public class TextIndexStore {
+    public static final String FILE_EXTENSION = ".tpindex";
+
+    private Logger logger = LoggerFactory.getLogger(TextIndexStore.class);
+
+    /**
+     * The cache directory, or null if the indexes are kept next to the PDF files
+     */
+    private final File directory;
+
+    /**
+     * Constructor for a store that keeps the indexes next to the PDF files
+     */
+    public TextIndexStore()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor for a store that keeps the indexes in a cache directory, keyed by the hash of the PDF files
+     * @param directory
+     */
+    public TextIndexStore(File directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * This function returns the index of a PDF file. The index is read from the store if it is there and belongs
+     * to the content of the file, otherwise it is built from the document and written to the store.
+     * @param pdfFile
+     * @param document the document loaded from the file
+     * @return
+     * @throws IOException
+     */
+    public DocumentTextIndex getOrBuild(Path pdfFile, PDDocument document) throws IOException
+    {
+        return getOrBuild(pdfFile, hash(pdfFile), document);
+    }
+
+    /**
+     * This function returns the index of a PDF file like the other getOrBuild does, for a file whose hash has
+     * already been computed, so that the file is not read again to hash it
+     * @param pdfFile
+     * @param contentHash the hex SHA-256 hash of the content of the file
+     * @param document the document loaded from the file
+     * @return
+     * @throws IOException
+     */
+    public DocumentTextIndex getOrBuild(Path pdfFile, String contentHash, PDDocument document) throws IOException
+    {
+        File indexFile = getIndexFile(pdfFile, contentHash);
+        DocumentTextIndex index = read(indexFile, contentHash);
+        if (index != null && index.getPageCount() == document.getNumberOfPages())
+        {
+            return index;
+        }
+
+        index = DocumentTextIndex.build(document, contentHash);
+        write(index, indexFile);
+        return index;
+    }
+
+    /**
+     * This function reads the index of a PDF file from the store
+     * @param pdfFile
+     * @return the index, or null if the store doesn't have an index for the content of the file
+     * @throws IOException if the PDF file can't be read
+     */
+    public DocumentTextIndex get(Path pdfFile) throws IOException
+    {
+        String contentHash = hash(pdfFile);
+        return read(getIndexFile(pdfFile, contentHash), contentHash);
+    }
+
+    private File getIndexFile(Path pdfFile, String contentHash)
+    {
+        if (directory == null)
+        {
+            return new File(pdfFile.toAbsolutePath().toString() + FILE_EXTENSION);
+        }
+        return new File(directory, contentHash + FILE_EXTENSION);
+    }
+
+    private DocumentTextIndex read(File indexFile, String contentHash)
+    {
+        if (!indexFile.isFile())
+        {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(indexFile.toPath()))) {
+            DocumentTextIndex index = DocumentTextIndex.read(in);
+            if (contentHash.equals(index.getContentHash()))
+            {
+                return index;
+            }
+            logger.info("The text index " + indexFile + " belongs to another version of the PDF file");
+        } catch (IOException e) {
+            logger.warn("Can't read the text index " + indexFile + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * This function writes an index to a temporary file that is then moved to the index file, so that readers
+     * never see a partly written index. An index that can't be written is only logged, because parsing can go on
+     * without it.
+     */
+    private void write(DocumentTextIndex index, File indexFile)
+    {
+        Path tempFile = null;
+        try {
+            File parent = indexFile.getAbsoluteFile().getParentFile();
+            Files.createDirectories(parent.toPath());
+            tempFile = Files.createTempFile(parent.toPath(), indexFile.getName(), ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                index.write(out);
+            }
+            try {
+                Files.move(tempFile, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+        } catch (IOException e) {
+            logger.warn("Can't write the text index " + indexFile + ": " + e.getMessage());
+        } finally {
+            if (tempFile != null) {
+                tempFile.toFile().delete();
+            }
+        }
+    }
+
+    /**
+     * This function computes the hex SHA-256 hash of the content of a file
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    static String hash(Path file) throws IOException
+    {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) >= 0) {
+                // the digest is updated while the file is read
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    static MessageDigest newDigest()
+    {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,430 @@
+package com.fs.tabulaplus;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.PDGraphicsState;
+import org.apache.pdfbox.pdmodel.graphics.xobject.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.xobject.PDXObjectForm;
+import org.apache.pdfbox.pdmodel.text.PDTextState;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.PDFOperator;
+import org.apache.pdfbox.util.PDFTextStripper;
+import org.apache.pdfbox.util.TextPosition;
+import org.apache.pdfbox.util.operator.OperatorProcessor;
+import technology.tabula.Page;
+import technology.tabula.TextElement;
+import technology.tabula.TextPages;
+import technology.tabula.Utils;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This extractor turns the pages of a PDF document into tabula pages that only have text elements and no ruling
+ * lines, for the sections that use the text algorithm, which never reads ruling lines. tabula's ObjectExtractor
+ * draws a page: it runs the path, painting and image operators of the content stream, decodes the images and
+ * collects the ruling lines. A text stripper only runs the text operators and the ones of the graphics state.
+ *
+ * The text elements are built from the glyphs the same way ObjectExtractor builds them: with the same rounding, the
+ * same width of a space when the glyph doesn't tell it, and without the glyphs that can't be printed or that are
+ * outside the clipping path. A text stripper doesn't run the path operators, so the extractor runs them the way
+ * PageDrawer does to follow the clipping path, without painting the paths, and runs the form XObjects but not the
+ * images. Unlike ObjectExtractor, which keeps the height of the first page it draws, the paths are flipped with the
+ * height of their own page.
+ *
+ * An extractor extracts one page at a time and is not thread-safe.
+ */
+class TextPageExtractor extends PDFTextStripper implements PageSource
+{
+    private static final String NBSP = "\u00A0";
+
+    /**
+     * The characters whose width in a font is taken as the width of a space, the first that has a width
+     */
+    private static final char[] SPACE_LIKE_CHARS = {' ', '-', '1', 'i'};
+
+    /**
+     * The operators that build, clip, end or paint a path
+     */
+    private static final String[] PATH_OPERATORS = {
+            "m", "l", "c", "v", "y", "h", "re", "W", "W*", "n", "S", "s", "f", "F", "f*", "B", "B*", "b", "b*"};
+
+    private final PDDocument document;
+
+    /**
+     * The text elements of the page being extracted and the smallest glyph size on it
+     */
+    private List<TextElement> characters;
+    private float minCharWidth;
+    private float minCharHeight;
+
+    /**
+     * The transformation of the page being extracted from PDF space to the space of tabula, for the crop box
+     */
+    private AffineTransform pageTransform;
+
+    /**
+     * The height of the page being extracted, which flips the paths like PageDrawer
+     */
+    private double pageHeight;
+
+    /**
+     * The path being built, in the space of PageDrawer, and the winding rule of the clipping path that it will be
+     * when it ends, or -1 if it won't clip
+     */
+    private final GeneralPath linePath = new GeneralPath();
+    private int clippingWindingRule = -1;
+
+    /**
+     * Constructor
+     * @param document the document, which must have been decrypted
+     * @throws IOException
+     */
+    TextPageExtractor(PDDocument document) throws IOException
+    {
+        super();
+        this.document = document;
+        OperatorProcessor pathOperatorProcessor = new PathOperatorProcessor();
+        for (String operator : PATH_OPERATORS)
+        {
+            registerOperatorProcessor(operator, pathOperatorProcessor);
+        }
+        registerOperatorProcessor("Do", new FormOperatorProcessor());
+    }
+
+    /**
+     * This function extracts a page of the document
+     * @param pageNumber
+     * @return the page, or null if the page has no content stream, like ObjectExtractor
+     */
+    @Override
+    public Page getPage(int pageNumber)
+    {
+        if (pageNumber < 1 || pageNumber > getPageCount())
+        {
+            throw new IndexOutOfBoundsException("Page number does not exist");
+        }
+        PDPage pdPage = (PDPage) document.getDocumentCatalog().getAllPages().get(pageNumber - 1);
+        characters = new ArrayList<>();
+        minCharWidth = Float.MAX_VALUE;
+        minCharHeight = Float.MAX_VALUE;
+        setStartPage(pageNumber);
+        setEndPage(pageNumber);
+        try {
+            if (pdPage.getContents() == null)
+            {
+                return null;
+            }
+            // the stripper writes nothing, because the glyphs are not handed to it
+            writeText(document, new StringWriter());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Utils.sort(characters);
+
+        int rotation = pdPage.findRotation();
+        PDRectangle cropBox = pdPage.findCropBox();
+        boolean turned = Math.abs(rotation) == 90 || Math.abs(rotation) == 270;
+        float width = turned ? cropBox.getHeight() : cropBox.getWidth();
+        float height = turned ? cropBox.getWidth() : cropBox.getHeight();
+        Page page = TextPages.create(width, height, rotation, pageNumber, pdPage, characters, minCharWidth,
+                minCharHeight);
+        characters = null;
+        return page;
+    }
+
+    @Override
+    public int getPageCount()
+    {
+        return document.getNumberOfPages();
+    }
+
+    @Override
+    protected void startPage(PDPage page) throws IOException
+    {
+        super.startPage(page);
+        // the transformation of ObjectExtractor, which turns the pages that are rotated by 90 or 270 degrees
+        int rotation = Math.abs(page.findRotation());
+        pageTransform = new AffineTransform();
+        if (rotation == 90 || rotation == 270)
+        {
+            pageTransform = AffineTransform.getRotateInstance(rotation * (Math.PI / 180.0), 0, 0);
+            pageTransform.concatenate(AffineTransform.getScaleInstance(1, -1));
+            pageTransform.concatenate(AffineTransform.getTranslateInstance(0, page.findCropBox().getHeight()));
+            pageTransform.concatenate(AffineTransform.getScaleInstance(1, -1));
+        }
+        pageHeight = page.findCropBox().createDimension().getHeight();
+        linePath.reset();
+        clippingWindingRule = -1;
+    }
+
+    /**
+     * This function turns a glyph into a text element, instead of handing it to the text stripper
+     * @param textPosition
+     */
+    @Override
+    protected void processTextPosition(TextPosition textPosition)
+    {
+        String c = textPosition.getCharacter();
+        if (!isPrintable(c))
+        {
+            return;
+        }
+        float height = textPosition.getHeightDir();
+        if (c.equals(NBSP))
+        {
+            c = " ";
+        }
+        float widthOfSpace = textPosition.getWidthOfSpace();
+        TextElement textElement = new TextElement(
+                Utils.round(textPosition.getYDirAdj() - height, 2),
+                Utils.round(textPosition.getXDirAdj(), 2),
+                Utils.round(textPosition.getWidthDirAdj(), 2),
+                Utils.round(textPosition.getHeightDir(), 2),
+                textPosition.getFont(),
+                textPosition.getFontSize(),
+                c,
+                Float.isNaN(widthOfSpace) || widthOfSpace == 0 ? currentSpaceWidth() : widthOfSpace,
+                textPosition.getDir());
+        if (getClippingBounds().intersects(textElement))
+        {
+            minCharWidth = (float) Math.min(minCharWidth, textElement.getWidth());
+            minCharHeight = (float) Math.min(minCharHeight, textElement.getHeight());
+            characters.add(textElement);
+        }
+    }
+
+    /**
+     * @return the bounds of the clipping path in the space of tabula, which is the crop box of the page for a text
+     * stripper
+     */
+    private Rectangle2D getClippingBounds()
+    {
+        return pageTransform.createTransformedShape(getGraphicsState().getCurrentClippingPath()).getBounds2D();
+    }
+
+    /**
+     * This function transforms a point of the content stream into the space of PageDrawer, like
+     * PageDrawer.transformedPoint
+     * @param x
+     * @param y
+     * @return
+     */
+    private Point2D transformedPoint(double x, double y)
+    {
+        double[] position = {x, y};
+        getGraphicsState().getCurrentTransformationMatrix().createAffineTransform()
+                .transform(position, 0, position, 0, 1);
+        return new Point2D.Double(position[0], pageHeight - position[1]);
+    }
+
+    private Point2D transformedPoint(List<COSBase> arguments, int index)
+    {
+        return transformedPoint(((COSNumber) arguments.get(index)).doubleValue(),
+                ((COSNumber) arguments.get(index + 1)).doubleValue());
+    }
+
+    /**
+     * This function intersects the clipping path with a path
+     * @param path
+     */
+    private void clip(GeneralPath path)
+    {
+        PDGraphicsState graphicsState = getGraphicsState();
+        if (graphicsState.getCurrentClippingPath() != null)
+        {
+            Area clippingPath = new Area(graphicsState.getCurrentClippingPath());
+            clippingPath.intersect(new Area(path));
+            graphicsState.setCurrentClippingPath(clippingPath);
+        }
+        else
+        {
+            graphicsState.setCurrentClippingPath(path);
+        }
+    }
+
+    /**
+     * This function ends the path, which becomes the clipping path if a clipping operator came before, like
+     * PageDrawer.endPath
+     */
+    private void endPath()
+    {
+        if (clippingWindingRule > -1)
+        {
+            GeneralPath clippingPath = (GeneralPath) linePath.clone();
+            clippingPath.setWindingRule(clippingWindingRule);
+            clip(clippingPath);
+            clippingWindingRule = -1;
+        }
+        linePath.reset();
+    }
+
+    /**
+     * This processor builds the path, and ends it or throws it away when it is painted
+     */
+    private class PathOperatorProcessor extends OperatorProcessor
+    {
+        @Override
+        public void process(PDFOperator operator, List<COSBase> arguments)
+        {
+            Point2D point;
+            Point2D control;
+            Point2D end;
+            switch (operator.getOperation())
+            {
+                case "m":
+                    point = transformedPoint(arguments, 0);
+                    linePath.moveTo((float) point.getX(), (float) point.getY());
+                    break;
+                case "l":
+                    point = transformedPoint(arguments, 0);
+                    linePath.lineTo((float) point.getX(), (float) point.getY());
+                    break;
+                case "c":
+                    point = transformedPoint(arguments, 0);
+                    control = transformedPoint(arguments, 2);
+                    end = transformedPoint(arguments, 4);
+                    linePath.curveTo((float) point.getX(), (float) point.getY(), (float) control.getX(),
+                            (float) control.getY(), (float) end.getX(), (float) end.getY());
+                    break;
+                case "v":
+                    point = linePath.getCurrentPoint();
+                    control = transformedPoint(arguments, 0);
+                    end = transformedPoint(arguments, 2);
+                    linePath.curveTo((float) point.getX(), (float) point.getY(), (float) control.getX(),
+                            (float) control.getY(), (float) end.getX(), (float) end.getY());
+                    break;
+                case "y":
+                    point = transformedPoint(arguments, 0);
+                    end = transformedPoint(arguments, 2);
+                    linePath.curveTo((float) point.getX(), (float) point.getY(), (float) end.getX(),
+                            (float) end.getY(), (float) end.getX(), (float) end.getY());
+                    break;
+                case "h":
+                    linePath.closePath();
+                    break;
+                case "re":
+                    double x = ((COSNumber) arguments.get(0)).doubleValue();
+                    double y = ((COSNumber) arguments.get(1)).doubleValue();
+                    double right = x + ((COSNumber) arguments.get(2)).doubleValue();
+                    double top = y + ((COSNumber) arguments.get(3)).doubleValue();
+                    appendRectangle(linePath, x, y, right, top);
+                    break;
+                case "W":
+                    clippingWindingRule = GeneralPath.WIND_NON_ZERO;
+                    break;
+                case "W*":
+                    clippingWindingRule = GeneralPath.WIND_EVEN_ODD;
+                    break;
+                case "n":
+                    endPath();
+                    break;
+                default:
+                    // a painting operator, which ObjectExtractor only reads ruling lines from
+                    linePath.reset();
+                    break;
+            }
+        }
+    }
+
+    private void appendRectangle(GeneralPath path, double left, double bottom, double right, double top)
+    {
+        Point2D[] corners = {transformedPoint(left, bottom), transformedPoint(right, bottom),
+                transformedPoint(right, top), transformedPoint(left, top)};
+        path.moveTo((float) corners[0].getX(), (float) corners[0].getY());
+        for (int i = 1; i < corners.length; i++)
+        {
+            path.lineTo((float) corners[i].getX(), (float) corners[i].getY());
+        }
+        path.closePath();
+    }
+
+    /**
+     * This processor runs the form XObjects clipped by their bounding box, like the Do operator of PageDrawer, and
+     * skips the images
+     */
+    private class FormOperatorProcessor extends OperatorProcessor
+    {
+        @Override
+        public void process(PDFOperator operator, List<COSBase> arguments) throws IOException
+        {
+            if (arguments.isEmpty() || !(arguments.get(0) instanceof COSName))
+            {
+                return;
+            }
+            PDXObject xObject = getResources().getXObjects().get(((COSName) arguments.get(0)).getName());
+            if (!(xObject instanceof PDXObjectForm))
+            {
+                return;
+            }
+            PDXObjectForm form = (PDXObjectForm) xObject;
+            getGraphicsStack().push((PDGraphicsState) getGraphicsState().clone());
+            try
+            {
+                Matrix matrix = form.getMatrix();
+                if (matrix != null)
+                {
+                    getGraphicsState().setCurrentTransformationMatrix(
+                            matrix.multiply(getGraphicsState().getCurrentTransformationMatrix()));
+                }
+                PDRectangle bBox = form.getBBox();
+                if (bBox != null)
+                {
+                    GeneralPath bBoxPath = new GeneralPath();
+                    appendRectangle(bBoxPath, bBox.getLowerLeftX(), bBox.getLowerLeftY(), bBox.getUpperRightX(),
+                            bBox.getUpperRightY());
+                    clip(bBoxPath);
+                }
+                processSubStream(getCurrentPage(), form.getResources(), form.getCOSStream());
+            }
+            finally
+            {
+                setGraphicsState(getGraphicsStack().pop());
+            }
+        }
+    }
+
+    /**
+     * @return the width of a space in the current font, for the glyphs that don't tell it
+     */
+    private float currentSpaceWidth()
+    {
+        PDGraphicsState graphicsState = getGraphicsState();
+        PDTextState textState = graphicsState.getTextState();
+        PDFont font = textState.getFont();
+        float fontSize = textState.getFontSize();
+        float horizontalScaling = textState.getHorizontalScalingPercent() / 100f;
+        float spaceWidth = 1000;
+        for (char spaceLikeChar : SPACE_LIKE_CHARS)
+        {
+            spaceWidth = font.getFontWidth(spaceLikeChar);
+            if (spaceWidth > 0)
+            {
+                break;
+            }
+        }
+        float scaleX = graphicsState.getCurrentTransformationMatrix().getValue(0, 0);
+        return (float) (spaceWidth / 1000.0 * fontSize * horizontalScaling * (scaleX == 0 ? 1 : scaleX));
+    }
+
+    private static boolean isPrintable(String s)
+    {
+        char c = s.charAt(0);
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return !Character.isISOControl(c) && c != Character.MAX_VALUE && block != null
+                && block != Character.UnicodeBlock.SPECIALS;
+    }
+}
@@ -0,0 +1,81 @@
+package com.fs.tabulaplus;
+
+import org.apache.pdfbox.util.TextPosition;
+
+import java.util.List;
+
+/**
+ * A string written by the text stripper together with the boxes of its first and its last glyph, which is all
+ * that a section tracker needs from a string. The bounding box of the string spans both glyphs, in the
+ * coordinates of the text stripper, where y grows downwards.
+ */
+public final class TextRun {
+    private final String text;
+    private final GlyphBox first;
+    private final GlyphBox last;
+
+    private final float left;
+    private final float top;
+    private final float right;
+    private final float bottom;
+
+    TextRun(String text, GlyphBox first, GlyphBox last)
+    {
+        this.text = text;
+        this.first = first;
+        this.last = last;
+        // the y of a glyph is its baseline, so the glyph is above it
+        this.left = Math.min(first.getX(), last.getX());
+        this.top = Math.min(first.getY() - first.getHeight(), last.getY() - last.getHeight());
+        this.right = Math.max(first.getX() + first.getWidth(), last.getX() + last.getWidth());
+        this.bottom = Math.max(first.getY(), last.getY());
+    }
+
+    static TextRun of(String text, List<TextPosition> textPositions)
+    {
+        GlyphBox first = GlyphBox.of(textPositions.get(0));
+        GlyphBox last = textPositions.size() == 1 ? first : GlyphBox.of(textPositions.get(textPositions.size() - 1));
+        return new TextRun(text, first, last);
+    }
+
+    public String getText()
+    {
+        return text;
+    }
+
+    GlyphBox getFirst()
+    {
+        return first;
+    }
+
+    GlyphBox getLast()
+    {
+        return last;
+    }
+
+    public float getLeft()
+    {
+        return left;
+    }
+
+    public float getTop()
+    {
+        return top;
+    }
+
+    public float getRight()
+    {
+        return right;
+    }
+
+    public float getBottom()
+    {
+        return bottom;
+    }
+
+    @Override
+    public String toString()
+    {
+        return text + " [" + left + ", " + top + ", " + right + ", " + bottom + "]";
+    }
+}
@@ -0,0 +1,137 @@
+package com.fs.tabulaplus;
+
+import org.apache.pdfbox.util.PDFTextStripper;
+import org.apache.pdfbox.util.TextPosition;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * This stripper scans a PDF document page by page and hands every page start, every string and every page end
+ * to a list of section trackers, so that the positions of the identifiers of many sections can be found within
+ * a single pass over the document. It can also record the scan into a text index, so that later scans of the
+ * same document can be replayed from the index.
+ */
+class TextStripper extends PDFTextStripper
+{
+    private final SectionTrackerGroup trackerGroup;
+
+    /**
+     * When this flag is set, the stripper stops at the end of the page on which all trackers become resolved
+     * instead of walking to the last page of the document
+     */
+    private boolean shortCircuit;
+
+    private int numOfScannedPages;
+
+    /**
+     * The builder of the text index that records the scan, or null if the scan is not recorded
+     */
+    private DocumentTextIndex.Builder indexBuilder;
+
+    /**
+     * Constructor. The stripper only scans the pages that the trackers need, from the first page of the first
+     * tracker to the last page of the last one. Without trackers it scans from the start page to the end.
+     * @param startPageNumber
+     * @param trackers
+     * @throws IOException
+     */
+    public TextStripper(int startPageNumber, List<PdfSectionTracker> trackers) throws IOException
+    {
+        this(startPageNumber, trackers, false);
+    }
+
+    /**
+     * Constructor
+     * @param startPageNumber
+     * @param trackers
+     * @param ordered true if the trackers follow the order of the sections in the document
+     * @throws IOException
+     */
+    public TextStripper(int startPageNumber, List<PdfSectionTracker> trackers, boolean ordered) throws IOException
+    {
+        super();
+        super.setSortByPosition(true);
+        super.setStartPage(startPageNumber);
+        this.trackerGroup = new SectionTrackerGroup(trackers, ordered);
+        if (!trackers.isEmpty())
+        {
+            super.setStartPage(trackerGroup.getFirstPageNumber());
+            super.setEndPage(trackerGroup.getLastPageNumber());
+        }
+    }
+
+    public void setShortCircuit(boolean shortCircuit)
+    {
+        this.shortCircuit = shortCircuit;
+    }
+
+    /**
+     * Record every page of the scan into a text index builder
+     * @param indexBuilder
+     */
+    void setIndexBuilder(DocumentTextIndex.Builder indexBuilder)
+    {
+        this.indexBuilder = indexBuilder;
+    }
+
+    /**
+     * @return the number of pages that have been scanned
+     */
+    public int getNumOfScannedPages()
+    {
+        return numOfScannedPages;
+    }
+
+    /**
+     * Every time a new page is scanned, this function is called
+     */
+    @Override
+    protected void writePageStart() throws IOException
+    {
+        super.writePageStart();
+        if (indexBuilder != null)
+        {
+            indexBuilder.startPage(getCurrentPageNo());
+        }
+        trackerGroup.startPage(getCurrentPageNo());
+    }
+
+    /**
+     * When the scanner reaches the end of a page, this function gets called
+     * @throws IOException
+     */
+    @Override
+    protected void writePageEnd() throws IOException
+    {
+        super.writePageEnd();
+        numOfScannedPages++;
+        if (indexBuilder != null)
+        {
+            indexBuilder.endPage(getCurrentPageNo());
+        }
+        if (trackerGroup.endPage(getCurrentPageNo()) && shortCircuit)
+        {
+            // the remaining pages can't change the result, so make the current page the last one to be processed
+            super.setEndPage(getCurrentPageNo());
+        }
+    }
+
+    /**
+     * This function gets called whenever a string needs to be written to the output stream
+     * @param text
+     * @param textPositions
+     * @throws IOException
+     */
+    @Override
+    protected void writeString(String text, List<TextPosition> textPositions) throws IOException
+    {
+        TextRun textRun = TextRun.of(text, textPositions);
+        if (indexBuilder != null)
+        {
+            indexBuilder.writeString(getCurrentPageNo(), textRun);
+        }
+        trackerGroup.writeString(getCurrentPageNo(), textRun);
+        super.writeString(text, textPositions);
+    }
+}
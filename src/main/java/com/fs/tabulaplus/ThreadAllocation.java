@@ -0,0 +1,94 @@
+package com.fs.tabulaplus;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class measures the bytes that a piece of work allocates on the heap. It reads the allocation counter of the
+ * thread that started the measuring, and of the other threads that run parts of the work through count, such as
+ * the threads that build tables in parallel mode. It only reads counters of these threads, so it has no effect on
+ * other threads and stays correct when documents are parsed at the same time. It measures a total, not the peak
+ * size of the heap.
+ */
+class ThreadAllocation {
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = getThreadMXBean();
+
+    private final long threadId;
+
+    private final long startBytes;
+
+    /**
+     * The bytes allocated by the other threads that have run parts of the work
+     */
+    private final AtomicLong otherThreadsBytes = new AtomicLong();
+
+    private ThreadAllocation(long threadId, long startBytes)
+    {
+        this.threadId = threadId;
+        this.startBytes = startBytes;
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadMXBean()
+    {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (sunThreadMXBean.isThreadAllocatedMemorySupported()
+                    && sunThreadMXBean.isThreadAllocatedMemoryEnabled())
+            {
+                return sunThreadMXBean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Start measuring the allocations of the current thread
+     * @return
+     */
+    static ThreadAllocation start()
+    {
+        long threadId = Thread.currentThread().getId();
+        long startBytes = THREAD_MX_BEAN != null ? THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) : -1;
+        return new ThreadAllocation(threadId, startBytes);
+    }
+
+    /**
+     * This function runs a part of the work on the current thread and counts the bytes it allocates. A part that
+     * runs on the thread that started the measuring is already counted by that thread.
+     * @param task
+     * @return the result of the task
+     * @throws Exception
+     */
+    <T> T count(Callable<T> task) throws Exception
+    {
+        long currentThreadId = Thread.currentThread().getId();
+        if (THREAD_MX_BEAN == null || startBytes < 0 || currentThreadId == threadId)
+        {
+            return task.call();
+        }
+        long taskStartBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(currentThreadId);
+        try {
+            return task.call();
+        } finally {
+            otherThreadsBytes.addAndGet(THREAD_MX_BEAN.getThreadAllocatedBytes(currentThreadId) - taskStartBytes);
+        }
+    }
+
+    /**
+     * This function must be called from the thread that started the measuring, once the other threads are done
+     * @return the bytes allocated by the thread and by the parts of the work counted on other threads since the
+     * measuring started, or -1 if the JVM can't measure it
+     */
+    long getAllocatedBytes()
+    {
+        if (THREAD_MX_BEAN == null || startBytes < 0)
+        {
+            return -1;
+        }
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - startBytes + otherThreadsBytes.get();
+    }
+}
@@ -0,0 +1,38 @@
+package technology.tabula;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class builds pages that only have text elements, from text elements that have been collected without
+ * tabula's ObjectExtractor. It is in the package of tabula because the spatial index of the text of a page, which
+ * Page.getArea needs to crop the page, is not public in tabula 0.9.1.
+ */
+public final class TextPages {
+    private TextPages() {
+    }
+
+    /**
+     * This function builds a page without ruling lines, like ObjectExtractor builds a page
+     * @param width
+     * @param height
+     * @param rotation
+     * @param pageNumber
+     * @param pdPage
+     * @param characters the text elements of the page, sorted
+     * @param minCharWidth the smallest width of the text elements
+     * @param minCharHeight the smallest height of the text elements
+     * @return
+     */
+    public static Page create(float width, float height, int rotation, int pageNumber, PDPage pdPage,
+                              List<TextElement> characters, float minCharWidth, float minCharHeight) {
+        RectangleSpatialIndex<TextElement> spatialIndex = new RectangleSpatialIndex<>();
+        for (TextElement character : characters) {
+            spatialIndex.add(character);
+        }
+        return new Page(0, 0, width, height, rotation, pageNumber, pdPage, characters, new ArrayList<Ruling>(),
+                minCharWidth, minCharHeight, spatialIndex);
+    }
+}
@@ -0,0 +1,172 @@
+package com.fs.tabulaplus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The tables are compared with NormalizedTables built from the same rows, which must read the same
+ */
+public class ColumnarNormalizedTableTest {
+
+    @Test
+    public void emptyTableHasNoRowsAndNoColumns() {
+        ColumnarNormalizedTable table = new ColumnarNormalizedTable();
+
+        assertEquals(0, table.getRows().size());
+        assertEquals(0, table.getNumOfColumns());
+        assertEquals("", table.toString());
+    }
+
+    @Test
+    public void rowsOfTheSameWidthReadLikeANormalizedTable() {
+        List<List<String>> rows = Arrays.asList(
+                Arrays.asList("Property", "345", "445"),
+                Arrays.asList("Investment", "", "654"),
+                Arrays.asList("", "", ""));
+
+        assertSameRows(rows, columnarTable(rows));
+    }
+
+    @Test
+    public void narrowRowsKeepTheirOwnWidth() {
+        List<List<String>> rows = Arrays.asList(
+                Arrays.asList("Non-current assets", "2010", "2009", "2008"),
+                Collections.singletonList("Property"),
+                Collections.<String>emptyList(),
+                Arrays.asList("Investment", "567"));
+
+        ColumnarNormalizedTable table = columnarTable(rows);
+
+        assertSameRows(rows, table);
+        assertEquals(4, table.getNumOfColumns());
+        assertEquals(1, table.getRows().get(1).size());
+        assertEquals(0, table.getRows().get(2).size());
+    }
+
+    @Test
+    public void columnsAddedAfterRowsExistAreEmptyInTheEarlierRows() {
+        List<List<String>> rows = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            // the table gets wider every 10 rows, after its row buffers have grown
+            List<String> row = new ArrayList<>();
+            for (int column = 0; column <= i / 10; column++) {
+                row.add("r" + i + "c" + column);
+            }
+            rows.add(row);
+        }
+
+        ColumnarNormalizedTable table = columnarTable(rows);
+
+        assertSameRows(rows, table);
+        assertEquals(4, table.getNumOfColumns());
+        String[] lastColumn = table.getColumn(3);
+        for (int i = 0; i < 30; i++) {
+            assertNull(lastColumn[i]);
+        }
+        assertEquals("r30c3", lastColumn[30]);
+    }
+
+    @Test
+    public void rowsCanBeAddedAfterTrimToSize() {
+        List<List<String>> rows = new ArrayList<>(Arrays.asList(
+                Arrays.asList("General income", "250,000"),
+                Arrays.asList("Increase in value, WIP", "15,000")));
+        ColumnarNormalizedTable table = columnarTable(rows);
+        table.trimToSize();
+
+        List<List<String>> moreRows = Arrays.asList(
+                Arrays.asList("Administrative costs", "(260,000)", "(200,000)"),
+                Collections.singletonList("Surplus"),
+                Arrays.asList("", "5,000"));
+        for (List<String> row : moreRows) {
+            table.addRow(row);
+        }
+        rows.addAll(moreRows);
+
+        assertSameRows(rows, table);
+        table.trimToSize();
+        assertSameRows(rows, table);
+    }
+
+    @Test
+    public void emptyTableCanBeTrimmedAndFilled() {
+        ColumnarNormalizedTable table = new ColumnarNormalizedTable();
+        table.trimToSize();
+        List<List<String>> rows = Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d"));
+        for (List<String> row : rows) {
+            table.addRow(row);
+        }
+
+        assertSameRows(rows, table);
+    }
+
+    @Test
+    public void getColumnReturnsNullForRowsWithoutTheColumn() {
+        ColumnarNormalizedTable table = columnarTable(Arrays.asList(
+                Arrays.asList("a", "b", "c"),
+                Collections.singletonList("d"),
+                Arrays.asList("e", "")));
+
+        assertArrayEquals(new String[] {"a", "d", "e"}, table.getColumn(0));
+        assertArrayEquals(new String[] {"b", null, ""}, table.getColumn(1));
+        assertArrayEquals(new String[] {"c", null, null}, table.getColumn(2));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getColumnRejectsAColumnThatNoRowHas() {
+        columnarTable(Collections.singletonList(Arrays.asList("a", "b"))).getColumn(2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getRejectsAColumnThatTheRowDoesNotHave() {
+        columnarTable(Arrays.asList(Arrays.asList("a", "b"), Collections.singletonList("c"))).get(1, 1);
+    }
+
+    @Test
+    public void addRowCopiesTheCells() {
+        ColumnarNormalizedTable table = new ColumnarNormalizedTable();
+        List<String> cells = new ArrayList<>(Arrays.asList("a", "b"));
+        table.addRow(cells);
+        cells.set(0, "changed");
+
+        assertEquals("a", table.get(0, 0));
+    }
+
+    @Test
+    public void toSimpleStringTrimsWithoutChangingTheTable() {
+        ColumnarNormalizedTable table = columnarTable(Collections.singletonList(Arrays.asList(" a ", " b")));
+
+        assertEquals("a b", table.getRows().get(0).toSimpleString());
+        assertEquals(" a ", table.get(0, 0));
+    }
+
+    private static ColumnarNormalizedTable columnarTable(List<List<String>> rows) {
+        ColumnarNormalizedTable table = new ColumnarNormalizedTable();
+        for (List<String> row : rows) {
+            table.addRow(row);
+        }
+        return table;
+    }
+
+    private static void assertSameRows(List<List<String>> rows, ColumnarNormalizedTable table) {
+        NormalizedTable expected = new NormalizedTable();
+        for (List<String> row : rows) {
+            expected.getRows().add(new NormalizedRow(new ArrayList<>(row)));
+        }
+
+        assertEquals(expected.getRows().size(), table.getRows().size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(expected.getRows().get(i).texts, table.getRows().get(i).texts);
+        }
+        assertEquals(expected.toString(), table.toString());
+        assertEquals(expected.toTabularString(), table.toTabularString());
+    }
+}
@@ -0,0 +1,164 @@
+package com.fs.tabulaplus;
+
+import org.apache.pdfbox.exceptions.CryptographyException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import technology.tabula.ObjectExtractor;
+import technology.tabula.Page;
+import technology.tabula.Rectangle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The queries of the index of sample-tables.pdf are compared with linear scans over the strings of every page, and
+ * the sections located from the index with the ones located by stripping the document
+ */
+public class DocumentTextIndexTest {
+    private static PDDocument document;
+    private static DocumentTextIndex index;
+
+    @BeforeClass
+    public static void buildIndex() throws IOException, CryptographyException {
+        document = PDDocument.load(new File("sample-tables.pdf"));
+        if (document.isEncrypted()) {
+            document.decrypt("");
+        }
+        index = DocumentTextIndex.build(document, null);
+    }
+
+    @AfterClass
+    public static void closeDocument() throws IOException {
+        document.close();
+    }
+
+    @Test
+    public void everyPageWithTextIsIndexed() {
+        assertEquals(document.getNumberOfPages(), index.getPageCount());
+        assertTrue(index.getNumOfTextRuns() > 0);
+        assertNull(index.getPage(0));
+        assertNull(index.getPage(index.getPageCount() + 1));
+    }
+
+    @Test
+    public void findFirstBelowFindsTheSameStringAsALinearScan() {
+        String[] texts = {"Table 7", "Table 8", "Table", "layout problems)", "2010", "missing text"};
+        for (DocumentTextIndex.IndexedPage page : index.getPages()) {
+            for (String text : texts) {
+                for (float y = -10; y < 900; y += 37) {
+                    assertSame(PageTextGridTest.firstBelow(page.getTextRuns(), text, y),
+                            index.findFirstBelow(page.getPageNumber(), text, y));
+                }
+            }
+        }
+        assertNotNull(index.findFirstBelow(3, "Table 7", 0));
+        assertNull(index.findFirstBelow(index.getPageCount() + 1, "Table", 0));
+    }
+
+    @Test
+    public void areaQueriesFindTheSameStringsAsALinearScan() {
+        float[][] areas = {
+                {0, 0, 700, 900},       // the whole page
+                {50, 100, 300, 200},    // a band across the text
+                {300, 400, 310, 410},   // a small box
+                {-200, -200, -100, -100}, // above and left of the page
+                {1000, 1000, 2000, 2000}  // below and right of the page
+        };
+        for (DocumentTextIndex.IndexedPage page : index.getPages()) {
+            List<TextRun> textRuns = page.getTextRuns();
+            for (float[] area : areas) {
+                Rectangle rectangle = new Rectangle(area[1], area[0], area[2] - area[0], area[3] - area[1]);
+                assertEquals(PageTextGridTest.inside(textRuns, area[0], area[1], area[2], area[3]),
+                        index.getTextRunsInside(page.getPageNumber(), rectangle));
+                assertEquals(PageTextGridTest.intersecting(textRuns, area[0], area[1], area[2], area[3]),
+                        page.getTextRunsIntersecting(rectangle));
+            }
+        }
+        assertEquals(Collections.emptyList(),
+                index.getTextRunsInside(index.getPageCount() + 1, new Rectangle(0, 0, 700, 900)));
+    }
+
+    @Test
+    public void locatingFromTheIndexFindsTheSamePageAreasAsStripping() throws IOException {
+        PageCache pageCache = new PageCache(new ObjectExtractor(document));
+        for (boolean ordered : new boolean[] {false, true}) {
+            List<PdfSection> sections = Arrays.asList(
+                    section("Table 7", "Table 8", null, null),
+                    section("layout problems)", "Table 11", "Table", "2010"),
+                    section(null, "missing text", null, null),
+                    section("Table", "2010", null, null));
+            PdfMultiSectionLocator stripped = new PdfMultiSectionLocator(pageCache, sections);
+            stripped.setOrdered(ordered);
+            stripped.locateSections(document, 1);
+            PdfMultiSectionLocator replayed = new PdfMultiSectionLocator(pageCache, sections);
+            replayed.setOrdered(ordered);
+            replayed.locateSections(index, 1);
+            for (PdfSection section : sections) {
+                assertEquals(areas(stripped.getPageAreas(section)), areas(replayed.getPageAreas(section)));
+            }
+
+            List<Page> parentPageAreas = stripped.getPageAreas(sections.get(0));
+            assertTrue(!parentPageAreas.isEmpty());
+            List<PdfSection> subSections = Arrays.asList(
+                    section("Table 7", "2010", null, null),
+                    section(null, "Table 8", null, null));
+            PdfMultiSectionLocator strippedSub = new PdfMultiSectionLocator(pageCache, parentPageAreas, subSections);
+            strippedSub.setOrdered(ordered);
+            strippedSub.locateSections(document, 1);
+            PdfMultiSectionLocator replayedSub = new PdfMultiSectionLocator(pageCache, parentPageAreas, subSections);
+            replayedSub.setOrdered(ordered);
+            replayedSub.locateSections(index, 1);
+            for (PdfSection section : subSections) {
+                assertEquals(areas(strippedSub.getPageAreas(section)), areas(replayedSub.getPageAreas(section)));
+            }
+        }
+    }
+
+    private static PdfSection section(String top, String bottom, String left, String right) {
+        return new PdfSection(top + "-" + bottom, top != null ? new String[] {top} : null, left,
+                new String[] {bottom}, right, false, false, false, false, 0, 0, null, null);
+    }
+
+    private static List<String> areas(List<Page> pageAreas) {
+        List<String> areas = new ArrayList<>();
+        for (Page pageArea : pageAreas) {
+            areas.add(pageArea.getPageNumber() + ": " + pageArea.getLeft() + ", " + pageArea.getTop() + ", "
+                    + pageArea.getRight() + ", " + pageArea.getBottom());
+        }
+        return areas;
+    }
+
+    @Test
+    public void indexReadBackAnswersTheSameQueries() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(out);
+        DocumentTextIndex readIndex = DocumentTextIndex.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(index.getPageCount(), readIndex.getPageCount());
+        assertEquals(index.getNumOfTextRuns(), readIndex.getNumOfTextRuns());
+        for (DocumentTextIndex.IndexedPage page : index.getPages()) {
+            TextRun expected = index.findFirstBelow(page.getPageNumber(), "Table", 0);
+            TextRun actual = readIndex.findFirstBelow(page.getPageNumber(), "Table", 0);
+            if (expected == null) {
+                assertNull(actual);
+            } else {
+                assertNotNull(actual);
+                assertEquals(expected.toString(), actual.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.fs.tabulaplus;
+
+import org.apache.pdfbox.exceptions.CryptographyException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import technology.tabula.ObjectExtractor;
+import technology.tabula.Page;
+import technology.tabula.Rectangle;
+import technology.tabula.RectangularTextContainer;
+import technology.tabula.Table;
+import technology.tabula.TextElement;
+import technology.tabula.extractors.BasicExtractionAlgorithm;
+import technology.tabula.extractors.SpreadsheetExtractionAlgorithm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * The tables of the auto algorithm are compared with the ones that tabula's SpreadsheetExtractionAlgorithm.isTabular
+ * chooses, on the pages of sample-tables.pdf and on areas of them. The text algorithm removes the text elements it
+ * merges from the page area it extracts, so every extraction gets a page area of its own.
+ */
+public class NormalizedTableTest {
+    private static PDDocument document;
+    private static ObjectExtractor oe;
+
+    @BeforeClass
+    public static void loadDocument() throws IOException, CryptographyException {
+        document = PDDocument.load(new File("sample-tables.pdf"));
+        if (document.isEncrypted()) {
+            document.decrypt("");
+        }
+        oe = new ObjectExtractor(document);
+    }
+
+    @AfterClass
+    public static void closeDocument() throws IOException {
+        document.close();
+    }
+
+    @Test
+    public void autoAlgorithmChoosesTheSameTablesAsTabula() throws IOException {
+        for (int pageNumber = 1; pageNumber <= document.getNumberOfPages(); pageNumber++) {
+            for (int areaIndex = 0; areaIndex < 4; areaIndex++) {
+                Page pageArea = getPageArea(pageNumber, areaIndex);
+                // tabula 0.9.1 fails to find the text bounds of less than two text elements
+                if (pageArea == null || pageArea.getText().size() < 2) {
+                    continue;
+                }
+                SpreadsheetExtractionAlgorithm spreadsheetExtractionAlgorithm = new SpreadsheetExtractionAlgorithm();
+                List<? extends Table> expected = spreadsheetExtractionAlgorithm.isTabular(pageArea)
+                        ? spreadsheetExtractionAlgorithm.extract(pageArea)
+                        : new BasicExtractionAlgorithm().extract(pageArea);
+
+                NormalizedTable table = new NormalizedTable(
+                        Collections.singletonList(getPageArea(pageNumber, areaIndex)), NormalizedTable.AUTO_ALGORITHM);
+                assertEquals("page " + pageNumber + ", area " + areaIndex, rows(expected), rows(table));
+            }
+        }
+    }
+
+    @Test
+    public void autoAlgorithmReadsAPageAreaWithOneTextElement() throws IOException {
+        Page page = oe.extract(1);
+        Rectangle area = null;
+        for (TextElement textElement : page.getText()) {
+            Rectangle textArea = new Rectangle(textElement.getTop(), textElement.getLeft(), textElement.width,
+                    textElement.height);
+            if (page.getText(textArea).size() == 1) {
+                area = textArea;
+                break;
+            }
+        }
+        assertNotNull(area);
+
+        NormalizedTable table = new NormalizedTable(Collections.singletonList(page.getArea(area)),
+                NormalizedTable.AUTO_ALGORITHM);
+
+        assertEquals(1, table.getRows().size());
+    }
+
+    /**
+     * @return the whole page, the top or the bottom half of the page, or an area with a margin around it, or null
+     * if the area has no text, which tabula can't crop
+     */
+    private static Page getPageArea(int pageNumber, int areaIndex) throws IOException {
+        Page page = oe.extract(pageNumber);
+        float middle = page.getTop() + page.height / 2;
+        Rectangle area;
+        switch (areaIndex) {
+            case 0:
+                return page;
+            case 1:
+                area = new Rectangle(page.getTop(), page.getLeft(), page.width, middle - page.getTop());
+                break;
+            case 2:
+                area = new Rectangle(middle, page.getLeft(), page.width, page.getBottom() - middle);
+                break;
+            default:
+                area = new Rectangle(page.getTop() + 50, page.getLeft() + 30, page.width - 60, page.height - 100);
+                break;
+        }
+        return page.getText(area).isEmpty() ? null : page.getArea(area);
+    }
+
+    private static List<List<String>> rows(List<? extends Table> tables) {
+        List<List<String>> rows = new ArrayList<>();
+        for (Table table : tables) {
+            for (List<RectangularTextContainer> row : table.getRows()) {
+                List<String> cells = new ArrayList<>();
+                for (RectangularTextContainer cell : row) {
+                    cells.add(cell.getText());
+                }
+                rows.add(cells);
+            }
+        }
+        return rows;
+    }
+
+    private static List<List<String>> rows(NormalizedTable table) {
+        List<List<String>> rows = new ArrayList<>();
+        for (NormalizedRow row : table.getRows()) {
+            rows.add(new ArrayList<>(row.texts));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,164 @@
+package com.fs.tabulaplus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The queries of the grid are compared with linear scans over all strings of the page
+ */
+public class PageTextGridTest {
+
+    @Test
+    public void emptyPageHasNoStrings() {
+        PageTextGrid grid = new PageTextGrid(Collections.<TextRun>emptyList());
+
+        assertEquals(0, grid.getTextRunsIntersecting(0, 0, 1000, 1000).size());
+        assertEquals(0, grid.getTextRunsInside(-1000, -1000, 1000, 1000).size());
+        assertNull(grid.findFirstBelow("Table", 0));
+    }
+
+    @Test
+    public void randomQueriesFindTheSameStringsAsALinearScan() {
+        Random random = new Random(42);
+        for (int numOfTextRuns : new int[] {1, 2, 7, 50, 400}) {
+            List<TextRun> textRuns = randomTextRuns(random, numOfTextRuns);
+            PageTextGrid grid = new PageTextGrid(textRuns);
+            for (int i = 0; i < 200; i++) {
+                // the queries also reach outside the text of the page
+                float left = random.nextFloat() * 800 - 100;
+                float top = random.nextFloat() * 1000 - 100;
+                float right = left + random.nextFloat() * 400;
+                float bottom = top + random.nextFloat() * 400;
+
+                assertEquals(intersecting(textRuns, left, top, right, bottom),
+                        grid.getTextRunsIntersecting(left, top, right, bottom));
+                assertEquals(inside(textRuns, left, top, right, bottom),
+                        grid.getTextRunsInside(left, top, right, bottom));
+                String text = "run" + random.nextInt(10);
+                assertSame(firstBelow(textRuns, text, top), grid.findFirstBelow(text, top));
+            }
+        }
+    }
+
+    @Test
+    public void zeroHeightStringsAreFound() {
+        List<TextRun> textRuns = new ArrayList<>();
+        textRuns.add(textRun("flat", 10, 100, 50, 0));
+        textRuns.add(textRun("flat too", 200, 300, 50, 0));
+        textRuns.add(textRun("tall", 10, 400, 50, 12));
+        PageTextGrid grid = new PageTextGrid(textRuns);
+
+        assertEquals(textRuns.subList(0, 1), grid.getTextRunsIntersecting(0, 100, 100, 100));
+        assertEquals(textRuns.subList(0, 1), grid.getTextRunsInside(10, 100, 60, 100));
+        assertEquals(textRuns.subList(1, 2), grid.getTextRunsInside(200, 300, 250, 300));
+        assertSame(textRuns.get(0), grid.findFirstBelow("flat", 100));
+        assertSame(textRuns.get(1), grid.findFirstBelow("flat", 100.5f));
+    }
+
+    @Test
+    public void stringsSpanningManyCellsAreFoundOnce() {
+        Random random = new Random(7);
+        List<TextRun> textRuns = randomTextRuns(random, 200);
+        // a header across the whole page, and a column down the whole page
+        textRuns.add(textRun("header", 0, 10, 700, 8));
+        textRuns.add(textRun("column", 300, 900, 10, 890));
+        PageTextGrid grid = new PageTextGrid(textRuns);
+
+        List<TextRun> found = grid.getTextRunsIntersecting(0, 0, 700, 900);
+        assertEquals(textRuns, found);
+        assertEquals(intersecting(textRuns, 290, 5, 320, 20), grid.getTextRunsIntersecting(290, 5, 320, 20));
+        assertEquals(intersecting(textRuns, 650, 400, 660, 410), grid.getTextRunsIntersecting(650, 400, 660, 410));
+    }
+
+    @Test
+    public void queriesOutsideThePageFindNothing() {
+        List<TextRun> textRuns = randomTextRuns(new Random(3), 100);
+        PageTextGrid grid = new PageTextGrid(textRuns);
+
+        assertEquals(0, grid.getTextRunsIntersecting(-500, -500, -100, -100).size());
+        assertEquals(0, grid.getTextRunsIntersecting(5000, 5000, 6000, 6000).size());
+        assertEquals(0, grid.getTextRunsInside(5000, 0, 6000, 1000).size());
+        assertNull(grid.findFirstBelow("run", 5000));
+        // an empty region, with its right left of its left
+        assertEquals(0, grid.getTextRunsIntersecting(400, 0, 100, 1000).size());
+    }
+
+    @Test
+    public void findFirstBelowTakesStringsAtTheSameHeightFromLeftToRight() {
+        List<TextRun> textRuns = new ArrayList<>();
+        textRuns.add(textRun("Table 8: right", 300, 200, 100, 10));
+        textRuns.add(textRun("Table 8: left", 50, 200, 100, 10));
+        textRuns.add(textRun("Table 7:", 50, 100, 100, 10));
+        PageTextGrid grid = new PageTextGrid(textRuns);
+
+        assertSame(textRuns.get(1), grid.findFirstBelow("Table 8:", 0));
+        assertSame(textRuns.get(2), grid.findFirstBelow("Table", 0));
+        assertSame(textRuns.get(1), grid.findFirstBelow("Table", 91));
+        assertNull(grid.findFirstBelow("Table 7:", 91));
+    }
+
+    private static List<TextRun> randomTextRuns(Random random, int numOfTextRuns) {
+        List<TextRun> textRuns = new ArrayList<>();
+        for (int i = 0; i < numOfTextRuns; i++) {
+            float x = random.nextFloat() * 600;
+            float y = random.nextFloat() * 800 + 10;
+            // some strings are wide or tall enough to overlap many cells, and some have no height
+            float width = random.nextInt(10) == 0 ? random.nextFloat() * 400 : random.nextFloat() * 60;
+            float height = random.nextInt(10) == 0 ? 0 : random.nextFloat() * 12;
+            textRuns.add(textRun("run" + random.nextInt(10) + " " + i, x, y, width, height));
+        }
+        return textRuns;
+    }
+
+    /**
+     * @return a string whose glyphs sit on the baseline y, from x to x + width
+     */
+    static TextRun textRun(String text, float x, float y, float width, float height) {
+        return new TextRun(text, new GlyphBox(x, y, width / 2, height), new GlyphBox(x + width / 2, y, width / 2,
+                height));
+    }
+
+    static List<TextRun> intersecting(List<TextRun> textRuns, float left, float top, float right, float bottom) {
+        List<TextRun> result = new ArrayList<>();
+        for (TextRun textRun : textRuns) {
+            if (textRun.getLeft() <= right && textRun.getRight() >= left
+                    && textRun.getTop() <= bottom && textRun.getBottom() >= top) {
+                result.add(textRun);
+            }
+        }
+        return result;
+    }
+
+    static List<TextRun> inside(List<TextRun> textRuns, float left, float top, float right, float bottom) {
+        List<TextRun> result = new ArrayList<>();
+        for (TextRun textRun : textRuns) {
+            if (textRun.getLeft() >= left && textRun.getRight() <= right
+                    && textRun.getTop() >= top && textRun.getBottom() <= bottom) {
+                result.add(textRun);
+            }
+        }
+        return result;
+    }
+
+    static TextRun firstBelow(List<TextRun> textRuns, String text, float y) {
+        TextRun first = null;
+        for (TextRun textRun : textRuns) {
+            if (textRun.getTop() < y || !(textRun.getText().startsWith(text) || textRun.getText().endsWith(text))) {
+                continue;
+            }
+            if (first == null || textRun.getTop() < first.getTop()
+                    || (textRun.getTop() == first.getTop() && textRun.getLeft() < first.getLeft())) {
+                first = textRun;
+            }
+        }
+        return first;
+    }
+}
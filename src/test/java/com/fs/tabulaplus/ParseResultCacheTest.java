@@ -0,0 +1,126 @@
+package com.fs.tabulaplus;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ParseResultCacheTest {
+
+    @Test
+    public void deserializeReadsBackTheSerializedTables() throws IOException {
+        Map<String, NormalizedTable> tables = sampleTables();
+
+        for (boolean columnar : new boolean[] {false, true}) {
+            Map<String, NormalizedTable> readTables =
+                    ParseResultCache.deserialize(ParseResultCache.serialize(tables), columnar);
+
+            assertEquals(new ArrayList<>(tables.keySet()), new ArrayList<>(readTables.keySet()));
+            for (String key : tables.keySet()) {
+                NormalizedTable table = tables.get(key);
+                NormalizedTable readTable = readTables.get(key);
+                assertEquals(columnar, readTable instanceof ColumnarNormalizedTable);
+                assertEquals(table.getTableName(), readTable.getTableName());
+                assertEquals(table.getRows().size(), readTable.getRows().size());
+                for (int i = 0; i < table.getRows().size(); i++) {
+                    assertEquals(table.getRows().get(i).texts, readTable.getRows().get(i).texts);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void emptyResultIsReadBackEmpty() throws IOException {
+        Map<String, NormalizedTable> tables = new LinkedHashMap<>();
+
+        assertTrue(ParseResultCache.deserialize(ParseResultCache.serialize(tables), false).isEmpty());
+    }
+
+    @Test
+    public void everyHitGetsItsOwnTables() {
+        ParseResultCache cache = new ParseResultCache(2);
+        cache.put("key", sampleTables());
+
+        Map<String, NormalizedTable> first = cache.get("key", false);
+        Map<String, NormalizedTable> second = cache.get("key", false);
+        first.get("Table_7").getRows().clear();
+
+        assertNotSame(first.get("Table_7"), second.get("Table_7"));
+        assertEquals(2, second.get("Table_7").getRows().size());
+        assertNull(cache.get("other key", false));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void fingerprintIsStableForEqualSections() {
+        String fingerprint = ParseResultCache.fingerprint(sampleSections(), false);
+
+        // new sections with new arrays but the same properties
+        assertEquals(fingerprint, ParseResultCache.fingerprint(sampleSections(), false));
+        assertEquals(ParseResultCache.getKey("hash", sampleSections(), false),
+                ParseResultCache.getKey("hash", sampleSections(), false));
+    }
+
+    @Test
+    public void fingerprintChangesWithTheSections() {
+        String fingerprint = ParseResultCache.fingerprint(sampleSections(), false);
+
+        assertNotEquals(fingerprint, ParseResultCache.fingerprint(sampleSections(), true));
+
+        List<PdfSection> sections = sampleSections();
+        sections.get(0).setBottomIdentifiers(new String[] {"Table 9:"});
+        assertNotEquals(fingerprint, ParseResultCache.fingerprint(sections, false));
+
+        sections = sampleSections();
+        sections.get(1).setAlgorithm(NormalizedTable.SPREADSHEET_ALGORITHM);
+        assertNotEquals(fingerprint, ParseResultCache.fingerprint(sections, false));
+
+        sections = sampleSections();
+        sections.get(0).getChildSections().get(0).setMaxPage(3);
+        assertNotEquals(fingerprint, ParseResultCache.fingerprint(sections, false));
+
+        sections = sampleSections();
+        Collections.reverse(sections);
+        assertNotEquals(fingerprint, ParseResultCache.fingerprint(sections, false));
+    }
+
+    private static Map<String, NormalizedTable> sampleTables() {
+        Map<String, NormalizedTable> tables = new LinkedHashMap<>();
+        NormalizedTable table7 = new NormalizedTable();
+        table7.setTableName("Table 7");
+        table7.getRows().add(new NormalizedRow(new ArrayList<>(Arrays.asList("Non-current assets", "2010", "2009"))));
+        table7.getRows().add(new NormalizedRow(new ArrayList<>(Arrays.asList("Property", "", "\"445\" \u00e9"))));
+        tables.put("Table_7", table7);
+        NormalizedTable table10 = new NormalizedTable();
+        table10.setTableName("Table 10");
+        table10.getRows().add(new NormalizedRow(new ArrayList<>(Collections.singletonList("General income"))));
+        table10.getRows().add(new NormalizedRow(new ArrayList<String>()));
+        tables.put("Table_10", table10);
+        // a section that doesn't exist in the document
+        tables.put("Missing", new NormalizedTable());
+        return tables;
+    }
+
+    private static List<PdfSection> sampleSections() {
+        PdfSection child = new PdfSection("Assets");
+        child.setTopIdentifiers(new String[] {"Non-current assets"});
+        PdfSection table7 = new PdfSection("Table 7", new String[] {"Table 7:"}, null, new String[] {"Table 8:"}, null,
+                false, false, false, false, 0, 0, null, new ArrayList<>(Collections.singletonList(child)));
+        PdfSection table10 = new PdfSection("Table 10");
+        table10.setTopIdentifiers(new String[] {"layout problems)", "self-contained year-end"});
+        table10.setBottomIdentifiers(new String[] {"Table 11"});
+        return new ArrayList<>(Arrays.asList(table7, table10));
+    }
+}
@@ -0,0 +1,78 @@
+package com.fs.tabulaplus;
+
+import org.apache.pdfbox.exceptions.CryptographyException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import technology.tabula.ObjectExtractor;
+import technology.tabula.Page;
+import technology.tabula.Rectangle;
+import technology.tabula.TextElement;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The pages of sample-tables.pdf that only have text are compared with the pages that tabula's ObjectExtractor
+ * extracts, which include the clipping of the text by the paths of the page.
+ */
+public class TextPageExtractorTest {
+    private static PDDocument document;
+
+    @BeforeClass
+    public static void loadDocument() throws IOException, CryptographyException {
+        document = PDDocument.load(new File("sample-tables.pdf"));
+        if (document.isEncrypted()) {
+            document.decrypt("");
+        }
+    }
+
+    @AfterClass
+    public static void closeDocument() throws IOException {
+        document.close();
+    }
+
+    @Test
+    public void textPagesHaveTheSameTextAsTabulaPages() throws IOException {
+        ObjectExtractor oe = new ObjectExtractor(document);
+        TextPageExtractor extractor = new TextPageExtractor(document);
+        assertEquals(oe.getPageCount(), extractor.getPageCount());
+        for (int pageNumber = 1; pageNumber <= document.getNumberOfPages(); pageNumber++) {
+            Page expected = oe.extract(pageNumber);
+            Page page = extractor.getPage(pageNumber);
+            String message = "page " + pageNumber;
+            assertEquals(message, expected.toString(), page.toString());
+            assertEquals(message, texts(expected.getText()), texts(page.getText()));
+            assertEquals(message, expected.getMinCharWidth(), page.getMinCharWidth(), 0);
+            assertEquals(message, expected.getMinCharHeight(), page.getMinCharHeight(), 0);
+            assertTrue(message, page.getRulings().isEmpty());
+        }
+    }
+
+    @Test
+    public void textPagesAreCroppedLikeTabulaPages() throws IOException {
+        ObjectExtractor oe = new ObjectExtractor(document);
+        TextPageExtractor extractor = new TextPageExtractor(document);
+        Page expected = oe.extract(1);
+        Page page = extractor.getPage(1);
+        Rectangle area = new Rectangle(expected.getTop(), expected.getLeft(), expected.width,
+                expected.height / 2);
+
+        assertEquals(texts(expected.getArea(area).getText()), texts(page.getArea(area).getText()));
+    }
+
+    private static List<String> texts(List<TextElement> textElements) {
+        List<String> texts = new ArrayList<>();
+        for (TextElement textElement : textElements) {
+            texts.add(textElement + " " + textElement.getFontSize() + " " + textElement.getWidthOfSpace() + " "
+                    + textElement.getDirection());
+        }
+        return texts;
+    }
+}